@@ -0,0 +1,121 @@
+package com.library2.benchmarks;
+
+import com.library2.utilities.ExcelDataFeeder;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Peak heap and rows per second of ExcelDataFeeder (event reader, bounded queue, streaming writer)
+ * vs loading the same sheet with XSSFWorkbook, on a generated book sheet.
+ * <p>
+ * Heap is sampled every 10 ms after a GC before each phase, so the numbers are comparable but not exact.
+ * Run with a small heap to see the difference, e.g.
+ * java -Xmx256m -cp target/test-classes:(test classpath) com.library2.benchmarks.ExcelFeedBenchmark [rows] [workers]
+ */
+public class ExcelFeedBenchmark {
+
+    public static void main(String[] args) throws Exception {
+
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 300_000;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        Path dir = Files.createTempDirectory("excel-feed");
+        Path data = dir.resolve("books.xlsx");
+        generate(data, rows);
+        System.out.printf("%d rows, %d KB file, max heap %d MB%n", rows, Files.size(data) / 1024, Runtime.getRuntime().maxMemory() >> 20);
+
+        AtomicLong checksum = new AtomicLong();
+        HeapSampler sampler = HeapSampler.start();
+        ExcelDataFeeder.Summary summary = ExcelDataFeeder.feed(data, "books", workers,
+                row -> {
+                    checksum.addAndGet(row.get("isbn").length());
+                    return "";
+                }, dir.resolve("results.xlsx"));
+        System.out.printf("feeder (%d workers): peak heap %d MB, %s", workers, sampler.stop(), summary);
+
+        sampler = HeapSampler.start();
+        long start = System.nanoTime();
+        try (InputStream in = Files.newInputStream(data); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            System.out.printf("XSSFWorkbook: peak heap %d MB, %d rows loaded in %d ms%n", sampler.stop(),
+                    workbook.getSheet("books").getLastRowNum(), (System.nanoTime() - start) / 1_000_000);
+        } catch (OutOfMemoryError e) {
+            System.out.printf("XSSFWorkbook: OutOfMemoryError after %d ms (peak heap %d MB)%n", (System.nanoTime() - start) / 1_000_000, sampler.stop());
+        } catch (RuntimeException e) {
+            // POI refuses to inflate a sheet part over 100 MB into memory
+            System.out.printf("XSSFWorkbook: could not load after %d ms (peak heap %d MB): %s%n",
+                    (System.nanoTime() - start) / 1_000_000, sampler.stop(), e.getMessage().lines().findFirst().orElse(""));
+        }
+
+        try (var files = Files.list(dir)) {
+            files.forEach(file -> file.toFile().delete());
+        }
+        Files.delete(dir);
+    }
+
+    private static void generate(Path file, int rows) throws Exception {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100); OutputStream out = Files.newOutputStream(file)) {
+            SXSSFSheet sheet = workbook.createSheet("books");
+            String[] headers = {"name", "isbn", "year", "author", "book_category_id", "description"};
+            Row header = sheet.createRow(0);
+            for (int col = 0; col < headers.length; col++) {
+                header.createCell(col).setCellValue(headers[col]);
+            }
+            for (int i = 1; i <= rows; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue("SN_test Book " + i);
+                row.createCell(1).setCellValue(String.valueOf(9_780_000_000_000L + i));
+                row.createCell(2).setCellValue(1950 + i % 70);
+                row.createCell(3).setCellValue("SN_test Author " + i % 1000);
+                row.createCell(4).setCellValue(1 + i % 20);
+                row.createCell(5).setCellValue("Generated row " + i);
+            }
+            workbook.write(out);
+        }
+    }
+
+    /*
+    Highest used heap seen while running
+     */
+    private static class HeapSampler implements Runnable {
+
+        private final Thread thread = new Thread(this, "heap-sampler");
+        private volatile boolean running = true;
+        private long peak;
+
+        static HeapSampler start() {
+            System.gc();
+            HeapSampler sampler = new HeapSampler();
+            sampler.thread.setDaemon(true);
+            sampler.thread.start();
+            return sampler;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                Runtime runtime = Runtime.getRuntime();
+                peak = Math.max(peak, runtime.totalMemory() - runtime.freeMemory());
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        long stop() throws InterruptedException {
+            running = false;
+            thread.join();
+            return peak >> 20;
+        }
+    }
+
+}
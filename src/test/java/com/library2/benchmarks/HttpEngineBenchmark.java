@@ -0,0 +1,125 @@
+package com.library2.benchmarks;
+
+import com.library2.utilities.AsyncHttpEngine;
+import com.sun.net.httpserver.HttpServer;
+import io.restassured.RestAssured;
+import io.restassured.response.Response;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests per second and threads used by the blocking RestAssured engine vs AsyncHttpEngine,
+ * with the same number of requests in flight.
+ * <p>
+ * A local server answers every request after a fixed delay (like a remote Library2 endpoint),
+ * so the numbers show the client side only. The server threads are started before measuring.
+ * Run: java -cp target/test-classes:(test classpath) com.library2.benchmarks.HttpEngineBenchmark [requests] [inFlight] [delayMs]
+ */
+public class HttpEngineBenchmark {
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        int inFlight = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int delayMillis = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        ThreadPoolExecutor serverThreads = new ThreadPoolExecutor(inFlight + 10, inFlight + 10, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>());
+        serverThreads.prestartAllCoreThreads();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        byte[] body = "[{\"id\":\"1\",\"name\":\"Test Librarian\"}]".getBytes(StandardCharsets.UTF_8);
+        server.createContext("/get_all_users", exchange -> {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.setExecutor(serverThreads);
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/get_all_users";
+
+        System.out.printf("Requests: %d, in flight: %d, server delay: %d ms%n", requests, inFlight, delayMillis);
+
+        // warm up both engines
+        blocking(url, requests / 10, inFlight);
+        async(url, requests / 10, inFlight);
+
+        run("RestAssured (blocking)", () -> blocking(url, requests, inFlight), requests);
+        run("AsyncHttpEngine", () -> async(url, requests, inFlight), requests);
+
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private interface Load {
+        void run() throws Exception;
+    }
+
+    private static void run(String name, Load load, int requests) throws Exception {
+        int baseline = threads.getThreadCount();
+        threads.resetPeakThreadCount();
+        long start = System.nanoTime();
+        load.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-24s %8.0f req/s   extra threads at peak: %d%n", name, requests / seconds, threads.getPeakThreadCount() - baseline);
+    }
+
+    /*
+    one platform thread per request in flight
+     */
+    private static void blocking(String url, int requests, int inFlight) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(inFlight);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            results.add(pool.submit(() -> RestAssured.given().get(url).statusCode()));
+        }
+        for (Future<Integer> result : results) {
+            check(result.get());
+        }
+        pool.shutdown();
+    }
+
+    /*
+    one thread sends everything, a semaphore keeps the same number of requests in flight
+     */
+    private static void async(String url, int requests, int inFlight) throws Exception {
+        Semaphore slots = new Semaphore(inFlight);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).header("Accept", "application/json").GET().build();
+        List<CompletableFuture<Response>> results = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            slots.acquire();
+            results.add(AsyncHttpEngine.INSTANCE.sendAsync(request).whenComplete((response, error) -> slots.release()));
+        }
+        for (CompletableFuture<Response> result : results) {
+            check(result.get().statusCode());
+        }
+    }
+
+    private static void check(int statusCode) {
+        if (statusCode != 200) {
+            throw new IllegalStateException("Unexpected status code " + statusCode);
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.library2.benchmarks;
+
+import com.library2.models.User;
+import com.library2.utilities.TypedBody;
+import io.restassured.path.json.JsonPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * JsonPath (GPath) field lookups vs one Jackson read into the User model with compiled getters,
+ * for the fields the US02 steps check on a /get_user_by_id/{id} body.
+ * Every iteration starts from the raw body, like a step after a new response.
+ * <p>
+ * Run: java -cp target/test-classes:(test classpath) com.library2.benchmarks.PayloadAccessBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadAccessBenchmark {
+
+    private static final String[] FIELDS = {"id", "full_name", "email", "password"};
+
+    private final byte[] body = ("{\"id\":\"1\",\"full_name\":\"Test Librarian\",\"email\":\"librarian10@library\","
+            + "\"password\":\"e10adc3949ba59abbe56e057f20f883e\",\"user_group_id\":\"2\",\"image\":null,"
+            + "\"extra_data\":null,\"status\":\"ACTIVE\",\"is_admin\":\"0\",\"start_date\":\"2022-12-15\","
+            + "\"end_date\":\"2025-12-15\",\"address\":\"Chicago\"}").getBytes(StandardCharsets.UTF_8);
+
+    private final Map<String, Function<Object, Object>> getters = TypedBody.accessorsOf(User.class);
+
+    @Benchmark
+    public void jsonPath(Blackhole blackhole) {
+        JsonPath jp = new JsonPath(new String(body, StandardCharsets.UTF_8));
+        for (String field : FIELDS) {
+            blackhole.consume(jp.getString(field));
+        }
+    }
+
+    @Benchmark
+    public void typedModel(Blackhole blackhole) {
+        User user = TypedBody.read(body, User.class);
+        for (String field : FIELDS) {
+            blackhole.consume(getters.get(field).apply(user));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PayloadAccessBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.library2.benchmarks;
+
+import com.library2.utilities.QueryResult;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares heap and time of reading a large table as List of HashMap (the old DB_Utils.getAllRowAsListOfMap way:
+ * absolute(row) and metadata lookups for every row) with reading it once into a columnar QueryResult.
+ * <p>
+ * A generated in-memory ResultSet that looks like the users table is used, so no database is needed.
+ * Run: java -cp target/test-classes:(test classpath) com.library2.benchmarks.QueryResultBenchmark [rows]
+ */
+public class QueryResultBenchmark {
+
+    private static final String[] COLUMNS = {"id", "full_name", "email", "password", "user_group_id", "image",
+            "extra_data", "status", "is_admin", "start_date", "end_date", "address"};
+
+    public static void main(String[] args) throws Exception {
+
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        System.out.println("Rows: " + rows + ", columns: " + COLUMNS.length);
+
+        // warm up both paths before measuring
+        for (int i = 0; i < 3; i++) {
+            listOfMaps(fakeResultSet(rows / 10));
+            QueryResult.from(fakeResultSet(rows / 10));
+        }
+
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        List<Map<String, String>> maps = listOfMaps(fakeResultSet(rows));
+        long mapsMillis = (System.nanoTime() - start) / 1_000_000;
+        long mapsHeap = usedHeap() - heapBefore;
+        System.out.printf("List<HashMap>  %6d ms  %7.1f MB  (rows=%d)%n", mapsMillis, mapsHeap / 1048576.0, maps.size());
+        maps = null;
+
+        heapBefore = usedHeap();
+        start = System.nanoTime();
+        QueryResult result = QueryResult.from(fakeResultSet(rows));
+        long columnarMillis = (System.nanoTime() - start) / 1_000_000;
+        long columnarHeap = usedHeap() - heapBefore;
+        System.out.printf("QueryResult    %6d ms  %7.1f MB  (rows=%d)%n", columnarMillis, columnarHeap / 1048576.0, result.getRowCount());
+    }
+
+    /*
+    Same steps as the old getAllRowAsListOfMap / getRowMap: jump to the row, ask metadata for every column
+     */
+    private static List<Map<String, String>> listOfMaps(ResultSet rs) throws Exception {
+        rs.last();
+        int rowCount = rs.getRow();
+        rs.beforeFirst();
+        List<Map<String, String>> all = new ArrayList<>();
+        for (int rowIndex = 1; rowIndex <= rowCount; rowIndex++) {
+            Map<String, String> rowMap = new HashMap<>();
+            int columnCount = rs.getMetaData().getColumnCount();
+            rs.absolute(rowIndex);
+            for (int colIndex = 1; colIndex <= columnCount; colIndex++) {
+                rowMap.put(rs.getMetaData().getColumnName(colIndex), rs.getString(colIndex));
+            }
+            all.add(rowMap);
+            rs.beforeFirst();
+        }
+        return all;
+    }
+
+    /*
+    Scrollable ResultSet with generated rows. getString returns a new String every time, like a JDBC driver does.
+     */
+    private static ResultSet fakeResultSet(int rows) {
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(QueryResultBenchmark.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getColumnCount" -> COLUMNS.length;
+                    case "getColumnName", "getColumnLabel" -> COLUMNS[(int) args[0] - 1];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+
+        int[] cursor = {0};
+        return (ResultSet) Proxy.newProxyInstance(QueryResultBenchmark.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "next" -> ++cursor[0] <= rows;
+                    case "absolute" -> {
+                        cursor[0] = (int) args[0];
+                        yield cursor[0] <= rows;
+                    }
+                    case "beforeFirst" -> {
+                        cursor[0] = 0;
+                        yield null;
+                    }
+                    case "last" -> {
+                        cursor[0] = rows;
+                        yield true;
+                    }
+                    case "getRow" -> cursor[0];
+                    case "getMetaData" -> metaData;
+                    case "getString" -> cell(cursor[0], (int) args[0]);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static String cell(int row, int column) {
+        return new String(switch (COLUMNS[column - 1]) {
+            case "id" -> String.valueOf(row);
+            case "full_name" -> "SN_test User " + row;
+            case "email" -> "user" + row + "@library";
+            case "password" -> "e10adc3949ba59abbe56e057f20f883e";
+            case "user_group_id" -> String.valueOf(2 + row % 2);
+            case "status" -> "ACTIVE";
+            case "is_admin" -> "0";
+            case "start_date" -> "2023-03-11";
+            case "end_date" -> "2025-04-02";
+            case "address" -> "City " + row % 500;
+            default -> "";
+        });
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
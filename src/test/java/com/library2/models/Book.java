@@ -0,0 +1,24 @@
+package com.library2.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.Data;
+
+/**
+ * Book as sent to /add_book and stored in the books table
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class Book {
+
+    private String id;
+    private String name;
+    private String isbn;
+    private String year;
+    private String author;
+    private String bookCategoryId;
+    private String description;
+
+}
@@ -0,0 +1,21 @@
+package com.library2.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.Data;
+
+/**
+ * Response of /decode: the user a token belongs to
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class DecodedUser {
+
+    private String id;
+    private String fullName;
+    private String email;
+    private String userGroupId;
+
+}
@@ -0,0 +1,26 @@
+package com.library2.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.Data;
+
+/**
+ * User of /get_user_by_id/{id}, also the body of /add_user
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class User {
+
+    private String id;
+    private String fullName;
+    private String email;
+    private String password;
+    private String userGroupId;
+    private String status;
+    private String startDate;
+    private String endDate;
+    private String address;
+
+}
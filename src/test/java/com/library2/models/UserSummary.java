@@ -0,0 +1,16 @@
+package com.library2.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+/**
+ * One element of /get_all_users
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class UserSummary {
+
+    private String id;
+    private String name;
+
+}
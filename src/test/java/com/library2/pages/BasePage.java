@@ -1,14 +1,12 @@
 package com.library2.pages;
 
-import com.library2.utilities.Driver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
-import org.openqa.selenium.support.PageFactory;
 
 public abstract class BasePage {
 
     public BasePage() {
-        PageFactory.initElements(Driver.getDriver(),this);
+        LazyDriverContext.initElements(this);          // browser is opened on first element access, not here
     }
 
     @FindBy(xpath = "//*[@id=\"navbarDropdown\"]/span")
@@ -1,10 +1,22 @@
 package com.library2.pages;
 
+import com.library2.utilities.TableReader;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
 
+import java.util.List;
+
 public class BooksPage extends BasePage {
 
+    // column numbers of tbl_books, same as td[n] in the locators below
+    public static final int ISBN_COLUMN = 2;
+    public static final int NAME_COLUMN = 3;
+    public static final int AUTHOR_COLUMN = 4;
+    public static final int YEAR_COLUMN = 6;
+
+    @FindBy(id = "tbl_books")
+    public WebElement booksTable;
+
     @FindBy(xpath = "//*[@class = 'form-control input-sm input-small input-inline']")
     public WebElement searchBox;
 
@@ -20,5 +32,9 @@ public class BooksPage extends BasePage {
     @FindBy(xpath = "//*[@id=\"tbl_books\"]/tbody/tr/td[6]")
     public WebElement result_year;
 
+    // reads all visible rows of tbl_books in one round trip
+    public List<TableReader.TableRow> getBookRows() {
+        return TableReader.read(booksTable);
+    }
 
 }
@@ -0,0 +1,44 @@
+package com.library2.pages;
+
+import com.library2.utilities.Driver;
+import org.openqa.selenium.By;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.PageFactory;
+import org.openqa.selenium.support.pagefactory.DefaultElementLocatorFactory;
+
+import java.util.List;
+
+/**
+ * SearchContext that asks Driver for the browser only when an element is really looked up.
+ * <p>
+ * PageFactory needs a SearchContext when the page object is created. Giving it this one instead of
+ * Driver.getDriver() means creating a page object never opens a browser, the first element access does.
+ */
+public class LazyDriverContext implements SearchContext {
+
+    private static final LazyDriverContext INSTANCE = new LazyDriverContext();
+
+    private LazyDriverContext() {
+    }
+
+    /**
+     * Initializes the @FindBy fields of the page object without touching the browser
+     *
+     * @param page page object
+     */
+    public static void initElements(Object page) {
+        PageFactory.initElements(new DefaultElementLocatorFactory(INSTANCE), page);
+    }
+
+    @Override
+    public List<WebElement> findElements(By by) {
+        return Driver.getDriver().findElements(by);
+    }
+
+    @Override
+    public WebElement findElement(By by) {
+        return Driver.getDriver().findElement(by);
+    }
+
+}
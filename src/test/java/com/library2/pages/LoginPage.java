@@ -3,16 +3,14 @@ package com.library2.pages;
 import com.library2.utilities.BrowserUtils;
 import com.library2.utilities.ConfigurationReader;
 import com.library2.utilities.ConfigurationReader;
-import com.library2.utilities.Driver;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
-import org.openqa.selenium.support.PageFactory;
 
 public class LoginPage {
 
     public LoginPage() {
-        PageFactory.initElements(Driver.getDriver(), this);
+        LazyDriverContext.initElements(this);          // browser is opened on first element access, not here
     }
 
     @FindBy(id = "inputEmail")
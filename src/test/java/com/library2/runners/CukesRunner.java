@@ -9,7 +9,8 @@ import org.junit.runner.RunWith;
         plugin = {"html:target/cucumber-report.html",
                 "me.jvt.cucumber.report.PrettyReports:target/cucumber",
                 "rerun:target/rerun.txt",
-                "json:target/cucumber.json"
+                "json:target/cucumber.json",
+                "com.library2.utilities.LogContext"
         },
         features = "src/test/resources/features",
         glue = "com/library2/step_definitions",
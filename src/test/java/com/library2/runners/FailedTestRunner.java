@@ -6,6 +6,7 @@ import org.junit.runner.RunWith;
 
 @RunWith(Cucumber.class)
 @CucumberOptions(
+        plugin = "com.library2.utilities.LogContext",
         features = "@target/rerun.txt",
         glue = "com/library2/step_definitions"
 )
@@ -0,0 +1,245 @@
+package com.library2.runners;
+
+import com.library2.utilities.ConfigurationReader;
+import com.library2.utilities.DB_Utils;
+import com.library2.utilities.Driver;
+import com.library2.utilities.Log;
+import com.library2.utilities.MetricsRegistry;
+import org.apache.commons.math3.stat.regression.SimpleRegression;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the scenarios again and again for hours (soak test) to find slow degradation, in the Library2 API
+ * (latency that creeps up) and in the framework (browsers, threads, result sets or heap that are never released).
+ * <p>
+ * After every run it takes one sample of each series:
+ * latency_ms {method} {endpoint}   mean time of the API requests of the run (MetricsRegistry)
+ * heap_after_gc_mb                 used heap after a full GC (soak.gc), otherwise used heap
+ * threads                          live JVM threads
+ * browser_processes                chrome/firefox/edge and driver processes started by this JVM
+ * open_browsers                    Driver browsers not quit yet: in use, parked (Driver.parkedBrowsers) or leaked
+ * open_result_sets                 DB_Utils.runQuery result sets that were never closed
+ * <p>
+ * A series drifts when the least squares line of its samples over time rises and the one-sided t-test of the slope
+ * is significant (p below soak.drift.alpha), and the line rises by at least soak.drift.min.change of its starting
+ * level (at least 1, so a count that starts at 0 drifts when it grows by one). The first soak.warmup.runs runs
+ * (class loading, JIT, caches) are kept out of the trends.
+ * <p>
+ * Runs share the browsers and the DB connection like TestDaemon runs, so anything that grows between runs is not
+ * given back by the framework. Each sample is appended to soak-timeseries.csv as soon as it is taken, the trend of
+ * every series is written to soak-report.txt at the end, also when the soak is stopped with Ctrl+C.
+ * Exit code 1 if a series drifted or a run failed.
+ * <p>
+ * Start (from the project folder), the arguments are Cucumber CLI arguments:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.mainClass=com.library2.runners.SoakRunner -Dexec.classpathScope=test -Dexec.args="--tags @api" -Dsoak.duration.min=240
+ * </pre>
+ * configuration.properties (or -D from terminal):
+ * soak.duration.min       how long to start new runs, default 60
+ * soak.max.runs           stop after this many runs, 0 = no limit, default 0
+ * soak.pause.s            pause between runs, default 0
+ * soak.warmup.runs        first runs not in the trends, default 1
+ * soak.gc                 full GC before each heap sample, default true
+ * soak.drift.alpha        significance level of the slope test, default 0.01
+ * soak.drift.min.change   smallest rise over the soak that is reported, relative to the starting level, default 0.1
+ * soak.dir                folder of the time series and the report, default target/soak
+ */
+public class SoakRunner {
+
+    private static final Logger log = Log.get(SoakRunner.class);
+
+    private static final Pattern BROWSER_PROCESS = Pattern.compile("(?i)(chrome|chromium|chromedriver|firefox|geckodriver|msedge)");
+
+    private static final double ALPHA = Double.parseDouble(ConfigurationReader.getProperty("soak.drift.alpha", "0.01"));
+    private static final double MIN_CHANGE = Double.parseDouble(ConfigurationReader.getProperty("soak.drift.min.change", "0.1"));
+    private static final int WARMUP_RUNS = Integer.parseInt(ConfigurationReader.getProperty("soak.warmup.runs", "1"));
+    private static final boolean GC = Boolean.parseBoolean(ConfigurationReader.getProperty("soak.gc", "true"));
+    private static final Path DIR = Path.of(ConfigurationReader.getProperty("soak.dir", "target/soak"));
+
+    // series name -> samples {hours since start, value}, only runs after the warm-up
+    private static final Map<String, List<double[]>> series = new TreeMap<>();
+    private static final AtomicBoolean finished = new AtomicBoolean();
+    private static final long started = System.nanoTime();
+    private static int runs;
+    private static int failedRuns;
+    private static BufferedWriter csv;
+
+    public static void main(String[] args) throws IOException {
+
+        long duration = TimeUnit.MINUTES.toNanos(Long.parseLong(ConfigurationReader.getProperty("soak.duration.min", "60")));
+        int maxRuns = Integer.parseInt(ConfigurationReader.getProperty("soak.max.runs", "0"));
+        long pauseMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(ConfigurationReader.getProperty("soak.pause.s", "0")));
+        String[] argv = TestDaemon.cucumberArgv(Arrays.asList(args));
+
+        Files.createDirectories(DIR);
+        csv = Files.newBufferedWriter(DIR.resolve("soak-timeseries.csv"), StandardCharsets.UTF_8);
+        csv.write("timestamp,elapsed_s,run,series,value\n");
+        Log.beforeShutdown(SoakRunner::finish);      // Ctrl+C: the report is written before logging stops
+
+        Driver.keepBrowsers(true);
+        DB_Utils.keepConnection(true);
+        log.info("Soak started: {} min, Cucumber arguments {}", TimeUnit.NANOSECONDS.toMinutes(duration), String.join(" ", argv));
+
+        while (System.nanoTime() - started < duration && (maxRuns == 0 || runs < maxRuns)) {
+            Map<List<String>, MetricsRegistry.Totals> before = MetricsRegistry.HTTP_REQUEST.totals();
+            TestDaemon.checkResources();
+            long start = System.nanoTime();
+            byte exitStatus;
+            try {
+                exitStatus = io.cucumber.core.cli.Main.run(argv, Thread.currentThread().getContextClassLoader());
+            } catch (RuntimeException e) {
+                log.error("ERROR OCCURRED WHILE RUNNING CUCUMBER {}", e.toString());
+                exitStatus = 2;
+            } finally {
+                TestDaemon.resetBetweenRuns();
+            }
+            runs++;
+            if (exitStatus != 0) {
+                failedRuns++;
+            }
+            Map<String, Double> sample = sample(before, MetricsRegistry.HTTP_REQUEST.totals());
+            record(sample, exitStatus);
+            Log.timed(log, (System.nanoTime() - start) / 1_000_000, "Soak run {} exit status {}: {}", runs, exitStatus, sample);
+            sleep(pauseMillis);
+        }
+
+        boolean drift = finish();
+        TestDaemon.releaseResources();
+        System.exit(drift || failedRuns > 0 ? 1 : 0);
+    }
+
+    /*
+    One value per series: latency of the requests between the two histogram snapshots, resources as they are now
+     */
+    private static Map<String, Double> sample(Map<List<String>, MetricsRegistry.Totals> before, Map<List<String>, MetricsRegistry.Totals> after) {
+        Map<String, Double> sample = new LinkedHashMap<>();
+
+        // labels are method, endpoint and status: statuses of one endpoint are put together
+        Map<String, double[]> requests = new TreeMap<>();
+        after.forEach((labels, totals) -> {
+            MetricsRegistry.Totals previous = before.getOrDefault(labels, new MetricsRegistry.Totals(0, 0));
+            long count = totals.count() - previous.count();
+            if (count > 0) {
+                double[] sum = requests.computeIfAbsent("latency_ms " + labels.get(0) + " " + labels.get(1), k -> new double[2]);
+                sum[0] += count;
+                sum[1] += totals.seconds() - previous.seconds();
+            }
+        });
+        requests.forEach((name, sum) -> sample.put(name, sum[1] * 1000 / sum[0]));
+
+        if (GC) {
+            System.gc();        // live heap only, otherwise garbage not collected yet looks like a leak
+        }
+        sample.put("heap_after_gc_mb", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024.0 * 1024));
+        sample.put("threads", (double) ManagementFactory.getThreadMXBean().getThreadCount());
+        sample.put("browser_processes", (double) ProcessHandle.current().descendants()
+                .filter(process -> process.info().command().map(command -> BROWSER_PROCESS.matcher(command).find()).orElse(false))
+                .count());
+        sample.put("open_browsers", (double) Driver.openBrowsers());
+        sample.put("open_result_sets", (double) DB_Utils.openResultSets());
+        return sample;
+    }
+
+    private static synchronized void record(Map<String, Double> sample, byte exitStatus) throws IOException {
+        double hours = (System.nanoTime() - started) / 3.6e12;
+        String prefix = Instant.now() + "," + String.format(Locale.ROOT, "%.1f", hours * 3600) + "," + runs + ",";
+        for (Map.Entry<String, Double> value : sample.entrySet()) {
+            csv.write(prefix + csvField(value.getKey()) + "," + value.getValue() + "\n");
+            if (runs > WARMUP_RUNS) {
+                series.computeIfAbsent(value.getKey(), k -> new ArrayList<>()).add(new double[]{hours, value.getValue()});
+            }
+        }
+        csv.write(prefix + "exit_status," + exitStatus + "\n");
+        csv.flush();        // a soak stopped with Ctrl+C or killed keeps every finished run
+    }
+
+    /*
+    Writes the report once (end of the soak or shutdown hook), true if a series drifted
+     */
+    private static synchronized boolean finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return false;
+        }
+        boolean drift = false;
+        StringBuilder report = new StringBuilder(String.format("Soak of %.1f h: %d runs, %d failed, %d warm-up runs not in the trends%n",
+                (System.nanoTime() - started) / 3.6e12, runs, failedRuns, Math.min(runs, WARMUP_RUNS)));
+        report.append(String.format("%-45s %7s %10s %10s %10s %8s %8s%n", "series", "samples", "first", "last", "slope/h", "change", "p"));
+        for (Map.Entry<String, List<double[]>> entry : series.entrySet()) {
+            Trend trend = Trend.of(entry.getValue());
+            drift |= trend.drifts();
+            report.append(String.format("%-45s %7d %10.2f %10.2f %10.3f %7.0f%% %8.4f%s%n", entry.getKey(), trend.samples,
+                    trend.first, trend.last, trend.slope, trend.change * 100, trend.p, trend.drifts() ? "  DRIFT" : ""));
+        }
+        report.append(drift ? "Drift found: the series marked DRIFT rise steadily over the soak"
+                : "No drift (p < " + ALPHA + " and rise of at least " + Math.round(MIN_CHANGE * 100) + "%)").append('\n');
+
+        try {
+            csv.close();
+            Files.writeString(DIR.resolve("soak-report.txt"), report);
+        } catch (IOException e) {
+            log.error("ERROR OCCURRED WHILE WRITING SOAK REPORT {}", e.getMessage());
+        }
+        log.info("Soak report ({}):\n{}", DIR.resolve("soak-report.txt"), report);
+        return drift;
+    }
+
+    private static String csvField(String value) {
+        return value.contains(",") || value.contains("\"") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+    Least squares line of the samples over time: slope per hour, rise over the soak relative to the starting level,
+    one-sided p-value of the slope (t-test with n - 2 degrees of freedom, SimpleRegression gives the two-sided one)
+     */
+    private record Trend(int samples, double first, double last, double slope, double change, double p) {
+
+        static Trend of(List<double[]> points) {
+            double first = points.get(0)[1];
+            double last = points.get(points.size() - 1)[1];
+            if (points.size() < 3) {
+                return new Trend(points.size(), first, last, Double.NaN, Double.NaN, Double.NaN);
+            }
+            SimpleRegression regression = new SimpleRegression();
+            points.forEach(point -> regression.addData(point[0], point[1]));
+            double start = points.get(0)[0];
+            double span = points.get(points.size() - 1)[0] - start;
+            double slope = regression.getSlope();
+            double change = slope * span / Math.max(Math.abs(regression.predict(start)), 1);
+            double twoSided = regression.getSignificance();
+            double p = slope > 0 ? twoSided / 2 : 1 - twoSided / 2;
+            return new Trend(points.size(), first, last, slope, change, p);
+        }
+
+        boolean drifts() {
+            // NaN (too few samples, or a constant series) compares false
+            return p < ALPHA && change >= MIN_CHANGE;
+        }
+    }
+
+}
@@ -0,0 +1,273 @@
+package com.library2.runners;
+
+import com.library2.utilities.BookPool;
+import com.library2.utilities.ConfigurationReader;
+import com.library2.utilities.DB_Utils;
+import com.library2.utilities.Driver;
+import com.library2.utilities.Eventually;
+import com.library2.utilities.Log;
+import com.library2.utilities.MetricsRegistry;
+import com.library2.utilities.PageMetrics;
+import com.library2.utilities.QueryProfiler;
+import com.library2.utilities.RequestSpecs;
+import com.library2.utilities.ResourceLifecycle;
+import io.restassured.RestAssured;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps a warm JVM that runs Cucumber again and again, so a re-run after editing a feature file
+ * does not pay JVM startup, class loading, database login and browser launch.
+ * <p>
+ * Between runs the database connection is kept (DB_Utils.keepConnection) and browsers are cleaned and kept
+ * (Driver.keepBrowsers); both are health-checked before reuse and replaced if they are dead.
+ * Feature files are read again on every run; changes in Java code need a restart of the daemon.
+ * <p>
+ * Start (from the project folder):
+ * <pre>
+ * mvn test-compile exec:java -Dexec.mainClass=com.library2.runners.TestDaemon -Dexec.classpathScope=test
+ * </pre>
+ * Run features with {@link TestDaemonClient}, the arguments are Cucumber CLI arguments:
+ * <pre>
+ * java -cp target/test-classes com.library2.runners.TestDaemonClient --tags @us1
+ * java -cp target/test-classes com.library2.runners.TestDaemonClient src/test/resources/features/US02.feature
+ * java -cp target/test-classes com.library2.runners.TestDaemonClient stop
+ * </pre>
+ * configuration.properties (or -D from terminal):
+ * daemon.port             local port of the daemon, default 7071
+ * daemon.warmup.browser   launch one browser at startup and keep it, default true
+ */
+public class TestDaemon {
+
+    static final String RUN = "RUN";
+    static final String STATUS = "STATUS";
+    static final String STOP = "STOP";
+    static final String EXIT_PREFIX = "@@EXIT ";
+
+    private static final String GLUE = "com.library2.step_definitions";
+    private static final String FEATURES = "src/test/resources/features";
+
+    private static int runs;
+
+    public static void main(String[] args) throws IOException {
+
+        int port = Integer.parseInt(ConfigurationReader.getProperty("daemon.port", "7071"));
+
+        long start = System.nanoTime();
+        warmUp();
+        System.out.println("Test daemon warmed up in " + (System.nanoTime() - start) / 1_000_000 + " ms, listening on localhost:" + port);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(TestDaemon::releaseResources, "test-daemon-shutdown"));
+
+        // one client at a time: runs share the browser and DB connection, so they must not overlap
+        try (ServerSocket server = new ServerSocket(port, 10, InetAddress.getLoopbackAddress())) {
+            while (true) {
+                try (Socket client = server.accept()) {
+                    if (!handle(client)) {
+                        break;
+                    }
+                } catch (IOException e) {
+                    System.out.println("ERROR OCCURRED WHILE TALKING TO THE CLIENT " + e.getMessage());
+                }
+            }
+        }
+        releaseResources();
+        System.out.println("Test daemon stopped after " + runs + " runs");
+    }
+
+    /*
+    Loads the glue and parses all features once (dry run), opens the DB connection and one browser
+     */
+    private static void warmUp() {
+        Driver.keepBrowsers(true);
+        DB_Utils.keepConnection(true);
+
+        io.cucumber.core.cli.Main.run(new String[]{"--dry-run", "--glue", GLUE, "--plugin", "summary", FEATURES},
+                Thread.currentThread().getContextClassLoader());
+
+        DB_Utils.createConnection();
+        if (Boolean.parseBoolean(ConfigurationReader.getProperty("daemon.warmup.browser", "true"))) {
+            try {
+                Driver.getDriver();
+                Driver.closeDriver();       // cleaned and kept for the first @ui scenario
+            } catch (RuntimeException e) {
+                System.out.println("BROWSER COULD NOT BE WARMED UP " + e.getMessage());
+            }
+        }
+    }
+
+    /*
+    Reads one request: a command line, then (for RUN) one Cucumber argument per line until an empty line.
+    Returns false if the daemon must stop.
+     */
+    private static boolean handle(Socket client) throws IOException {
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+        PrintStream out = new PrintStream(client.getOutputStream(), true, StandardCharsets.UTF_8);
+
+        String command = in.readLine();
+        if (STOP.equals(command)) {
+            out.println("Test daemon is stopping");
+            out.println(EXIT_PREFIX + 0);
+            return false;
+        }
+        if (STATUS.equals(command)) {
+            out.println("runs: " + runs + ", database connection valid: " + DB_Utils.isConnectionValid()
+                    + ", kept browsers: " + Driver.parkedBrowsers() + ", browsers started: " + Driver.browserStarts());
+            out.println(EXIT_PREFIX + 0);
+            return true;
+        }
+        if (!RUN.equals(command)) {
+            out.println("Unknown command: " + command);
+            out.println(EXIT_PREFIX + 2);
+            return true;
+        }
+
+        List<String> cucumberArgs = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            cucumberArgs.add(line);
+        }
+
+        byte exitStatus = run(cucumberArgs, out);
+        out.println(EXIT_PREFIX + exitStatus);
+        return true;
+    }
+
+    /*
+    Runs Cucumber with the client's arguments, console output goes to the daemon console and to the client
+     */
+    private static byte run(List<String> cucumberArgs, PrintStream client) {
+
+        checkResources();
+        String[] argv = cucumberArgv(cucumberArgs);
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new TeeOutputStream(console, client), true, StandardCharsets.UTF_8));
+        long start = System.nanoTime();
+        byte exitStatus;
+        try {
+            exitStatus = io.cucumber.core.cli.Main.run(argv, Thread.currentThread().getContextClassLoader());
+        } catch (RuntimeException e) {
+            System.out.println("ERROR OCCURRED WHILE RUNNING CUCUMBER " + e);
+            exitStatus = 2;
+        } finally {
+            resetBetweenRuns();
+            Log.awaitQueued(2000);      // the last log lines of the run also go to the client
+            System.out.flush();
+            System.setOut(console);
+        }
+        runs++;
+        client.println("Run " + runs + " finished in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return exitStatus;
+    }
+
+    /*
+    Cucumber arguments with the defaults of the runners: glue, report plugins and all features, unless they are given
+     */
+    static String[] cucumberArgv(List<String> cucumberArgs) {
+        List<String> argv = new ArrayList<>();
+        if (!cucumberArgs.contains("--glue") && !cucumberArgs.contains("-g")) {
+            argv.add("--glue");
+            argv.add(GLUE);
+        }
+        if (!cucumberArgs.contains("--plugin") && !cucumberArgs.contains("-p")) {
+            argv.addAll(List.of("--plugin", "summary", "--plugin", "html:target/cucumber-report.html", "--plugin", "rerun:target/rerun.txt", "--plugin", "com.library2.utilities.LogContext"));
+        }
+        argv.addAll(cucumberArgs);
+        if (cucumberArgs.stream().noneMatch(arg -> !arg.startsWith("-") && (arg.endsWith(".feature") || arg.contains("/") || arg.startsWith("classpath:")))) {
+            argv.add(FEATURES);
+        }
+        return argv.toArray(new String[0]);
+    }
+
+    /*
+    Health check before a run: a dead DB connection is dropped here, the next @db hook opens a new one.
+    Kept browsers are checked when they are taken (Driver.getDriver).
+     */
+    static void checkResources() {
+        if (!DB_Utils.isConnectionValid()) {
+            DB_Utils.keepConnection(false);
+            DB_Utils.keepConnection(true);
+        }
+    }
+
+    /*
+    Global state a run may leave behind: a browser of a scenario that failed in a hook, open statements,
+    RestAssured settings and the request templates (built again from the current config on first use, see RequestSpecs)
+     */
+    static void resetBetweenRuns() {
+        Driver.resetDriver();       // the run thread keeps its browser (LibraryResources worker scope)
+        Driver.allowBrowser(true);
+        DB_Utils.destroy();
+        RestAssured.reset();
+        RequestSpecs.clear();
+        // report accumulators are static, every run reports only its own scenarios
+        Eventually.clearReport();
+        PageMetrics.clearReport();
+        QueryProfiler.clearReport();
+        BookPool.clearReport();
+    }
+
+    static void releaseResources() {
+        Driver.keepBrowsers(false);
+        DB_Utils.keepConnection(false);
+        MetricsRegistry.stopServer();
+        ResourceLifecycle.shutdown();
+    }
+
+    /*
+    Writes to the console and the client; a client that went away does not stop the run
+     */
+    private static class TeeOutputStream extends OutputStream {
+
+        private final OutputStream console;
+        private final OutputStream client;
+        private boolean clientGone;
+
+        TeeOutputStream(OutputStream console, OutputStream client) {
+            this.console = console;
+            this.client = client;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            console.write(bytes, offset, length);
+            if (!clientGone) {
+                try {
+                    client.write(bytes, offset, length);
+                } catch (IOException e) {
+                    clientGone = true;
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            console.flush();
+            if (!clientGone) {
+                try {
+                    client.flush();
+                } catch (IOException e) {
+                    clientGone = true;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.library2.runners;
+
+import com.library2.utilities.ConfigurationReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Thin client of {@link TestDaemon}. It only needs the JDK and target/test-classes on the classpath, so it starts instantly.
+ * <p>
+ * Arguments are passed to Cucumber as they are, "status" and "stop" are daemon commands.
+ * The exit code is the exit code of the Cucumber run.
+ */
+public class TestDaemonClient {
+
+    public static void main(String[] args) throws IOException {
+
+        int port = Integer.parseInt(ConfigurationReader.getProperty("daemon.port", "7071"));
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            PrintStream out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            if (args.length == 1 && args[0].equalsIgnoreCase("stop")) {
+                out.println(TestDaemon.STOP);
+            } else if (args.length == 1 && args[0].equalsIgnoreCase("status")) {
+                out.println(TestDaemon.STATUS);
+            } else {
+                out.println(TestDaemon.RUN);
+                for (String arg : args) {
+                    out.println(arg);
+                }
+                out.println();
+            }
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(TestDaemon.EXIT_PREFIX)) {
+                    System.exit(Integer.parseInt(line.substring(TestDaemon.EXIT_PREFIX.length()).trim()));
+                }
+                System.out.println(line);
+            }
+            System.out.println("CONNECTION TO THE TEST DAEMON WAS CLOSED BEFORE THE RUN FINISHED");
+            System.exit(2);
+        } catch (ConnectException e) {
+            System.out.println("TEST DAEMON IS NOT RUNNING ON PORT " + port + ", start it with TestDaemon first");
+            System.exit(2);
+        }
+    }
+
+}
@@ -1,58 +1,177 @@
 package com.library2.step_definitions;
 
+import com.library2.utilities.BookPool;
 import com.library2.utilities.ConfigurationReader;
-import com.library2.utilities.DB_Utils;
 import com.library2.utilities.Driver;
+import com.library2.utilities.Eventually;
+import com.library2.utilities.FailureArtifacts;
+import com.library2.utilities.LibraryResources;
+import com.library2.utilities.LocalGrid;
+import com.library2.utilities.Log;
+import com.library2.utilities.MetricsRegistry;
+import com.library2.utilities.PageMetrics;
+import com.library2.utilities.QueryProfiler;
+import com.library2.utilities.RecordReplayFilter;
+import com.library2.utilities.ResourceLifecycle;
 import io.cucumber.java.After;
+import io.cucumber.java.AfterAll;
+import io.cucumber.java.AfterStep;
 import io.cucumber.java.Before;
+import io.cucumber.java.BeforeAll;
 import io.cucumber.java.Scenario;
-import io.restassured.RestAssured;
-import org.openqa.selenium.OutputType;
-import org.openqa.selenium.TakesScreenshot;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.WebDriver;
 
 import java.time.Duration;
 
 public class Hooks {
 
-    @Before()
-    public void setBaseURI() {
-        System.out.println("----- Setting BaseURI");
-        RestAssured.baseURI= ConfigurationReader.getProperty("library.baseUri");
+    private static final Logger log = Log.get(Hooks.class);
+
+    private static final boolean BROWSER_PREWARM = Boolean.parseBoolean(ConfigurationReader.getProperty("browser.prewarm", "false"));
+
+    private static final boolean BOOK_POOL_PRESTART = Boolean.parseBoolean(ConfigurationReader.getProperty("book.pool.prestart", "false"));
+
+    /*
+    live: real Library2 API, record: real API and save the exchanges, replay: answer from the recording without network
+     */
+    private static final String API_MODE = ConfigurationReader.getProperty("api.mode", "live");
+
+    @BeforeAll
+    public static void setApiMode() {
+        log.info("API mode: {}", API_MODE);
+        RecordReplayFilter.setMode(API_MODE);
+        MetricsRegistry.startServer();
+    }
+
+    @BeforeAll
+    public static void startResources() {
+        // config and HTTP stack are ready before the first scenario, DB, tokens and browsers on first use (LibraryResources)
+        LibraryResources.startSuite();
+    }
+
+    @BeforeAll
+    public static void startBookPool() {
+        if (BOOK_POOL_PRESTART) {
+            // pool books are created in the background while the first scenarios run
+            BookPool.start();
+        }
+    }
+
+    @Before(order = 0)
+    public void guardBrowser(Scenario scenario) {
+        // only @ui scenarios may open a browser, page objects alone do not open one anymore
+        Driver.allowBrowser(scenario.getSourceTagNames().contains("@ui"));
+    }
+
+    @Before(order = 1)
+    public void checkResources() {
+        // a dead DB connection or browser is dropped here and opened again when the scenario needs it
+        ResourceLifecycle.beginScenario();
     }
 
     @After()
     public void endScenario(Scenario scenario){
-        System.out.println("Test Result for "+scenario.getName()+" "+scenario.getStatus());
+        log.info("Test Result for {} {}", scenario.getName(), scenario.getStatus());
+        MetricsRegistry.SCENARIOS.inc(scenario.getStatus().name().toLowerCase());
+        // books of a failed scenario may be changed, they leave the pool
+        BookPool.releaseAll(scenario.isFailed());
+        Driver.allowBrowser(true);
     }
 
     @Before("@db")
     public void dbHook() {
-        System.out.println("----- creating database connection");
-        DB_Utils.createConnection();
-    }
-
-    @After("@db")
-    public void afterDbHook() {
-        System.out.println("----- closing database connection");
-        DB_Utils.destroy();
-
+        // the connection is opened once for the run, the statement of this scenario is closed after it
+        LibraryResources.DB_SESSION.get();
     }
 
     @Before("@ui")
     public void setUp() {
-        Driver.getDriver().get(ConfigurationReader.getProperty("library_url"));
-        Driver.getDriver().manage().window().maximize();
-        Driver.getDriver().manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+        if (BROWSER_PREWARM) {
+            // browser starts in the background while API/DB steps run, first page object access takes it over
+            Driver.prewarm(driver -> {
+                driver.get(ConfigurationReader.getProperty("library_url"));
+                driver.manage().window().maximize();
+                driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+            });
+            return;
+        }
+        WebDriver driver = LibraryResources.BROWSER.get();
+        driver.get(ConfigurationReader.getProperty("library_url"));
+        driver.manage().window().maximize();
+        driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
 
     }
 
+    @AfterStep("@ui")
+    public void collectPageMetrics(Scenario scenario) {
+        if (!PageMetrics.ENABLED || !Driver.isStarted()) {
+            return;
+        }
+        String metrics = PageMetrics.collect(Driver.getDriver());
+        if (!metrics.isEmpty()) {
+            scenario.attach(metrics, "text/plain", "page metrics");
+        }
+    }
+
     @After("@ui")
     public void tearDown(Scenario scenario) {
-        if (scenario.isFailed()) {
-            final byte[] screenshot = ((TakesScreenshot) Driver.getDriver()).getScreenshotAs(OutputType.BYTES);
-            scenario.attach(screenshot, "image/png","screenshot");
+        if (scenario.isFailed() && Driver.isStarted()) {
+            // screenshot, page source and console log are written in the background, report only gets file links
+            FailureArtifacts.capture(scenario, Driver.getDriver());
+        }
+        String prewarmReport = Driver.lastPrewarmReport();
+        if (prewarmReport != null) {
+            scenario.log(prewarmReport);
         }
-        Driver.closeDriver();
+        if (Driver.isStarted()) {
+            // a browser opened by prewarm or a page object is handed to the lifecycle: kept and cleaned, or closed
+            LibraryResources.BROWSER.get();
+        } else {
+            Driver.closeDriver();   // only drops a pre-warmed browser the scenario never used
+        }
+    }
+
+    @After(order = 0)
+    public void releaseScenarioResources() {
+        // order 0 runs after the other @After hooks
+        ResourceLifecycle.endScenario();
+    }
+
+    @AfterAll
+    public static void writeRunReports() {
+        MetricsRegistry.writeFile();
+        RecordReplayFilter.save();
+        String replay = RecordReplayFilter.report();
+        if (!replay.isEmpty()) {
+            log.info("{}", replay);
+        }
+        FailureArtifacts.awaitPendingWrites(30);
+        PageMetrics.writeReport();
+        QueryProfiler.writeReport();
+        String bookPool = BookPool.report();
+        if (!bookPool.isEmpty()) {
+            log.info("{}", bookPool);
+        }
+        String convergence = Eventually.report();
+        if (!convergence.isEmpty()) {
+            log.info("Time until expected state was visible:\n{}", convergence);
+        }
+        log.info("Browsers started in this run: {}", Driver.browserStarts());
+        if (LocalGrid.isStarted()) {
+            log.info("{}", LocalGrid.getInstance().report());
+        }
+        if (BROWSER_PREWARM) {
+            log.info("Browser startup time hidden by pre-warming: {} ms", Driver.hiddenStartupMillis());
+        }
+        // closing times are added to the report at JVM exit (target/performance/resource-lifecycle.txt)
+        log.info("{}", ResourceLifecycle.report());
+    }
+
+    @AfterAll
+    public static void releaseRunResources() {
+        // browsers of parallel scenario threads, the next run has new threads
+        ResourceLifecycle.endRun();
     }
 
 }
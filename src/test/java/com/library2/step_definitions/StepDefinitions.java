@@ -1,43 +1,71 @@
 package com.library2.step_definitions;
 
+import com.library2.models.Book;
 import com.library2.pages.BasePage;
 import com.library2.pages.BooksPage;
 import com.library2.pages.LoginPage;
+import com.library2.utilities.BookPool;
 import com.library2.utilities.BrowserUtils;
+import com.library2.utilities.ConfigurationReader;
 import com.library2.utilities.DB_Utils;
+import com.library2.utilities.Eventually;
+import com.library2.utilities.ExcelDataFeeder;
+import com.library2.utilities.LatencyProbe;
+import com.library2.utilities.LibraryResources;
+import com.library2.utilities.LayerVerification;
+import com.library2.utilities.LatencyStats;
+import com.library2.utilities.JsonArrayStream;
 import com.library2.utilities.LibraryUtils;
+import com.library2.utilities.Log;
+import com.library2.utilities.Reconciler;
+import com.library2.utilities.RequestSpecs;
+import com.library2.utilities.ResponseSchemas;
+import com.library2.utilities.StreamingJsonValidator;
+import com.library2.utilities.TableReader;
+import com.library2.utilities.TypedBody;
 
 import io.cucumber.java.en.*;
-import io.restassured.RestAssured;
 import io.restassured.path.json.JsonPath;
 import io.restassured.response.Response;
 import io.restassured.response.ValidatableResponse;
 import io.restassured.specification.RequestSpecification;
 
-import org.hamcrest.Matchers;
+import org.apache.logging.log4j.Logger;
 import org.junit.Assert;
 import org.openqa.selenium.Keys;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.InputMismatchException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static com.library2.utilities.LibraryUtils.*;
 import static org.junit.Assert.assertEquals;
 
 public class StepDefinitions {
 
+    private static final Logger log = Log.get(StepDefinitions.class);
+
     // REST-Assured fields for managing API requests and responses
-    private final RequestSpecification givenPart = RestAssured.given().log().all();
+    private final LatencyProbe.Capture lastRequest = new LatencyProbe.Capture();
+    // own copy of a shared template, replaced by the template of the role or token when the login step runs
+    private RequestSpecification givenPart = RequestSpecs.given().filter(lastRequest);
     private Response response;
-    private JsonPath jp;
+    private JsonPath jp;     // parsed on first use only, see jsonPath()
+    private TypedBody typedBody;    // response read into its model on first use, see field()
     private ValidatableResponse thenPart;
+    private String method;   // method and endpoint of the last request, so it can be sent again
+    private String endpoint;
 
     // Miscellaneous fields for storing shared data
     private String pathParam;
     private String token; // Token for reuse across multiple API calls
     private Map<String, Object> randomMap = new HashMap<>();
+    private ExcelDataFeeder.Summary excelSummary;
+
+    private static final int PRINT_BODY_MAX_BYTES = Integer.parseInt(ConfigurationReader.getProperty("api.print.max.bytes", "10000"));
 
     // Page objects for UI interaction
     private final LoginPage loginPage = new LoginPage();
@@ -49,14 +77,15 @@ public class StepDefinitions {
     // Logs in to the Library API using a role and retrieves the corresponding token
     @Given("I logged Library api as a {string}")
     public void iLoggedLibraryApiAsA(String role) {
-        givenPart.header("x-library-token", LibraryUtils.generateTokenByRole(role));
+        token = LibraryResources.token(role);     // cached for the run while it is valid
+        givenPart = RequestSpecs.given(role, RequestSpecs.Family.ANY).filter(lastRequest);     // token header is in the template
     }
 
     // Logs in to the Library API using explicit email and password credentials
     @Given("I logged Library api with credentials {string} and {string}")
     public void i_logged_library_api_with_credentials_and(String email, String password) {
         token = LibraryUtils.getToken(email, password);
-        givenPart.header("x-library-token", token);
+        givenPart = RequestSpecs.givenToken(token, RequestSpecs.Family.ANY).filter(lastRequest);
     }
 
     // Adds the token to the request body for further API calls
@@ -79,17 +108,89 @@ public class StepDefinitions {
     // Sends a GET request to a specified API endpoint
     @When("I send GET request to {string} endpoint")
     public void iSendGETRequestToEndpoint(String endpoint) {
+        this.method = "GET";
+        this.endpoint = endpoint;
         response = givenPart.when().get(endpoint);
+        jp = null;
+        typedBody = null;
         thenPart = response.then();
+        Log.timed(log, response.getTime(), "{} {} -> {}", method, endpoint, response.getStatusCode());
     }
 
     // Sends a POST request to a specified API endpoint
     @When("I send POST request to {string} endpoint")
     public void iSendPOSTRequestToEndpoint(String endpoint) {
+        this.method = "POST";
+        this.endpoint = endpoint;
         response = givenPart.when().post(endpoint);
-        jp = response.jsonPath(); // Extracts the response body for further analysis
+        jp = null;
+        typedBody = null;
         thenPart = response.then();
-        response.prettyPrint(); // Prints the response for debugging purposes
+        Log.timed(log, response.getTime(), "{} {} -> {}", method, endpoint, response.getStatusCode());
+        printBody();
+    }
+
+    // Sends one POST request per row of an Excel sheet on parallel workers, the columns of the row are the form parameters.
+    // The sheet is streamed, the outcome of every row is written to a result sheet (see ExcelDataFeeder)
+    @When("I send POST request to {string} for every row of {string} sheet {string}")
+    public void iSendPOSTRequestForEveryRowOfSheet(String endpoint, String file, String sheet) {
+        String rowToken = token;
+        excelSummary = ExcelDataFeeder.feed(ExcelDataFeeder.dataFile(file), sheet, row -> {
+            // own specification per row, givenPart is not thread safe
+            Response rowResponse = RequestSpecs.givenToken(rowToken, RequestSpecs.Family.WRITE)
+                    .formParams(row)
+                    .post(endpoint);
+            if (rowResponse.getStatusCode() / 100 != 2) {
+                throw new AssertionError("status " + rowResponse.getStatusCode() + ": " + rowResponse.asString());
+            }
+            return rowResponse.asString();
+        });
+        log.info("POST {} for every row of {} / {}:\n{}", endpoint, file, sheet, excelSummary);
+    }
+
+    @Then("every row should be accepted")
+    public void everyRowShouldBeAccepted() {
+        Assert.assertTrue("No rows were sent", excelSummary.getRows() > 0);
+        Assert.assertEquals("Rows failed\n" + excelSummary, 0, excelSummary.getFailed());
+    }
+
+    /*
+    Response body parsed into a JsonPath tree on first use, steps that do not read fields do not pay for the parsing
+     */
+    private JsonPath jsonPath() {
+        if (jp == null) {
+            jp = response.jsonPath();
+        }
+        return jp;
+    }
+
+    /*
+    Value of a top level response field: read from the typed model (one Jackson read per response, compiled getters)
+    if the endpoint has one, otherwise with a JsonPath (GPath) lookup
+     */
+    private String field(String path) {
+        if (typedBody == null) {
+            typedBody = TypedBody.of(endpoint, response);
+        }
+        if (typedBody != null && typedBody.has(path)) {
+            return typedBody.getString(path);
+        }
+        return jsonPath().getString(path);
+    }
+
+    /*
+    Logs small bodies pretty printed at debug level, large bodies (e.g. a list of all users) only with their size
+     */
+    private void printBody() {
+        if (!log.isDebugEnabled()) {
+            return;
+        }
+        byte[] body = response.asByteArray();
+        if (body.length <= PRINT_BODY_MAX_BYTES) {
+            log.debug("Response body:\n{}", response.asPrettyString());
+        } else {
+            log.debug("Response body: {} bytes, not printed (api.print.max.bytes={})", body.length, PRINT_BODY_MAX_BYTES);
+        }
     }
 
     // Sets a path parameter for API requests
@@ -113,27 +214,76 @@ public class StepDefinitions {
 
     @And("{string} field should not be null")
     public void fieldShouldNotBeNull(String path) {
-        thenPart.body(path, Matchers.notNullValue());
+        Assert.assertNotNull(path + " field is null", field(path));
     }
 
     // Verifies that a specific field in the response matches the path parameter
     @Then("{string} field should be same with path param")
     public void fieldShouldBeSameWithPathParam(String idField) {
-        jp = response.jsonPath(); // Parse the response body
-        String results = jp.getString(idField);
+        String results = field(idField);
         assertEquals(pathParam, results); // Validates the path parameter against the response
     }
 
     // Ensures that multiple fields in the response are not null
     @Then("following fields should not be null")
     public void followingFieldsShouldNotBeNull(List<String> fields) {
-        fields.forEach(field -> Assert.assertNotNull(jp.getString(field)));
+        fields.forEach(name -> Assert.assertNotNull(name + " field is null", field(name)));
+    }
+
+    // Checks every element of a list response in one streaming pass, without building a JsonPath tree
+    @Then("every element of the response should have not null fields")
+    public void everyElementOfTheResponseShouldHaveNotNullFields(List<String> fields) {
+        StreamingJsonValidator.Result result = new StreamingJsonValidator(fields).validate(response.asInputStream());
+        log.info("Streaming check of {}: {}", endpoint, result);
+        Assert.assertTrue("Not every element of the response is valid\n" + result, result.isValid());
     }
 
     // Validates that a specific field value matches the expected value
     @And("the field value for {string} path should be equal to {string}")
     public void fieldValueShouldBeEqualTo(String path, String value) {
-        thenPart.body(path, Matchers.is(value));
+        assertEquals(value, field(path));
+    }
+
+    // Validates the whole body against a cached JSON schema (src/test/resources/schemas) and reports all violations at once
+    @And("response body should match {string} schema")
+    public void responseBodyShouldMatchSchema(String schemaName) {
+        List<String> violations = ResponseSchemas.validate(schemaName, response.asString());
+        Assert.assertTrue("Response does not match \"" + schemaName + "\" schema:\n" + String.join("\n", violations),
+                violations.isEmpty());
+    }
+
+    // -------------------- Response Time SLA --------------------
+
+    // Sends the last request again (warm-up requests are not counted) and checks the percentile of the response times.
+    // Keep in mind POST requests create new records every time they are sent.
+    @Then("response time should be below {int} ms at p{int} over {int} requests")
+    public void responseTimeShouldBeBelowMsAtPercentile(int maxMillis, int percentile, int requests) {
+
+        int warmUp = Integer.parseInt(ConfigurationReader.getProperty("sla.warmup.requests", "3"));
+        for (int i = 0; i < warmUp; i++) {
+            givenPart.when().request(method, endpoint);
+        }
+
+        LatencyStats stats = new LatencyStats();
+        for (int i = 0; i < requests; i++) {
+            stats.add(givenPart.when().request(method, endpoint).getTimeIn(TimeUnit.MILLISECONDS));
+        }
+
+        double actual = stats.percentile(percentile);
+        log.info("{} {} response times: {}", method, endpoint, stats.summary("ms"));
+
+        if (actual >= maxMillis) {
+            String breakdown;
+            try {
+                breakdown = LatencyProbe.probe(lastRequest.last()).toString();
+            } catch (IOException e) {
+                breakdown = "not available, " + e.getMessage();
+            }
+            Assert.fail("p" + percentile + " response time of " + method + " " + endpoint + " is " + Math.round(actual)
+                    + " ms, expected below " + maxMillis + " ms"
+                    + "\nresponse times: " + stats.summary("ms")
+                    + "\nbreakdown of one more request: " + breakdown);
+        }
     }
 
     // -------------------- Random Data Creation --------------------
@@ -150,6 +300,21 @@ public class StepDefinitions {
         randomMap.forEach(givenPart::formParam);
     }
 
+    // Takes a pre-created book from the book pool instead of creating one, it is given back after the scenario
+    @Given("I lease a book from the book pool")
+    public void iLeaseABookFromTheBookPool() {
+        Book leased = BookPool.lease();
+        randomMap = new HashMap<>();
+        randomMap.put("id", leased.getId());
+        randomMap.put("name", leased.getName());
+        randomMap.put("isbn", leased.getIsbn());
+        randomMap.put("year", leased.getYear());
+        randomMap.put("author", leased.getAuthor());
+        randomMap.put("book_category_id", leased.getBookCategoryId());
+        randomMap.put("description", leased.getDescription());
+        log.info("Leased pool book {}: {}", leased.getId(), leased.getName());
+    }
+
     // -------------------- UI Validations --------------------
 
     // Logs into the Library UI using the specified user type
@@ -161,34 +326,58 @@ public class StepDefinitions {
     // Navigates to a specific page in the UI
     @Given("I navigate to {string} page")
     public void i_navigate_to_page(String pageName) {
-        System.out.println("Navigating to \""+pageName+"\" page");
+        log.info("Navigating to \"{}\" page", pageName);
         base.booksPageButton.click(); // Clicks the button for navigation
     }
 
     // Verifies that book information matches across UI, database, and API
+    // DB and API layers run in the background while the UI layer is checked, all mismatches are reported together
     @Then("UI, Database and API created book information must match")
     public void uiDatabaseAndApiCreatedBookInformationMustMatch() {
+        String bookId = field("book_id");
+        bookLayers(bookId)
+                .layer("API", () -> bookId == null ? List.of("book_id is missing in the response") : List.of())
+                .verify();
+    }
 
-        String query = "SELECT * FROM books WHERE id='" + jp.getString("id")+"'";
-
-        // Search for the book in the UI
-        book.searchBox.sendKeys(randomMap.get("name").toString() + Keys.ENTER);
-        BrowserUtils.waitFor(1);
-
-        System.out.println("Query running: "+query);
+    // Verifies a book taken from the book pool in the UI and database, no API call creates it
+    @Then("UI and Database information of the leased book must match")
+    public void uiAndDatabaseInformationOfTheLeasedBookMustMatch() {
+        bookLayers(randomMap.get("id").toString()).verify();
+    }
 
-        // Retrieve book details from the database
-        DB_Utils.runQuery(query);
-        Map<String, String> dataMap = DB_Utils.getRowMap(1);
+    /*
+    DB and UI layers of a book with the values of randomMap, the UI search for it is started here
+     */
+    private LayerVerification bookLayers(String bookId) {
 
-        System.out.println("Retrieved data into the map from the query:\n"+dataMap);
+        String query = "SELECT * FROM books WHERE id='" + bookId + "'";
+        String bookName = randomMap.get("name").toString();
 
-        // Compare data from API, UI, and database
-        DB_Utils.assertMapDB(dataMap, randomMap);
-        Assert.assertEquals(randomMap.get("name").toString(), book.result_name.getText());
-        Assert.assertEquals(randomMap.get("author").toString(), book.result_author.getText());
-        Assert.assertEquals(randomMap.get("year").toString(), book.result_year.getText());
-        Assert.assertEquals(randomMap.get("isbn").toString(), book.result_isbn.getText());
+        // Search for the book in the UI
+        book.searchBox.sendKeys(bookName + Keys.ENTER);
+
+        log.info("Query running: {}", query);
+
+        return new LayerVerification("book " + bookId)
+                .layer("DB", () -> {
+                    // poll until the book is visible instead of a fixed wait
+                    Map<String, String> dataMap = Eventually.until("book visible in DB",
+                            () -> DB_Utils.query(query), result -> result.getRowCount() > 0).getRowMap(1);
+                    log.info("Retrieved data into the map from the query:\n{}", dataMap);
+                    return LayerVerification.compare(randomMap, dataMap);
+                })
+                .callerLayer("UI", () -> {
+                    // whole row in one call instead of one call per cell, polled until the search result is rendered
+                    TableReader.TableRow uiRow = Eventually.until("book visible in UI search",
+                            () -> book.getBookRows().get(0), row -> bookName.equals(row.get(BooksPage.NAME_COLUMN)));
+                    Map<String, String> uiMap = new HashMap<>();
+                    uiMap.put("name", uiRow.get(BooksPage.NAME_COLUMN));
+                    uiMap.put("author", uiRow.get(BooksPage.AUTHOR_COLUMN));
+                    uiMap.put("year", uiRow.get(BooksPage.YEAR_COLUMN));
+                    uiMap.put("isbn", uiRow.get(BooksPage.ISBN_COLUMN));
+                    return LayerVerification.compare(randomMap, uiMap, "name", "author", "year", "isbn");
+                });
     }
 
     // -------------------- Database Validations --------------------
@@ -196,12 +385,32 @@ public class StepDefinitions {
     // Compares API-created user data with database data
     @Then("created user information should match with Database")
     public void createdUserInformationShouldMatchWithDatabase() {
-        String id = jp.getString("user_id"); // Extracts user ID from API response
+        String id = field("user_id"); // Extracts user ID from API response
         DB_Utils.runQuery("SELECT * FROM books WHERE id=" + id); // Fetches data from the database
         Map<String, String> dataMapDb = DB_Utils.getRowMap(1);
         DB_Utils.assertMapDB(dataMapDb, randomMap); // Compares database and API data
     }
 
+    // Compares every element of the response list with every row of the query, matched by the key field.
+    // Table: API field | DB column, only these fields are compared
+    @Then("every entry of the response should match database query {string} by {string}")
+    public void everyEntryOfTheResponseShouldMatchDatabaseQuery(String query, String keyField, Map<String, String> fieldMapping) {
+
+        Reconciler reconciler = new Reconciler("API", "DB", List.of(keyField));
+        fieldMapping.forEach(reconciler::map);
+
+        Reconciler.Report report = reconciler.reconcile(
+                record -> {
+                    try (JsonArrayStream elements = new JsonArrayStream(response.asInputStream())) {
+                        elements.forEachRemaining(record);
+                    }
+                },
+                record -> DB_Utils.streamQuery(query, record));
+
+        log.info("Reconciliation of {} with \"{}\":\n{}", endpoint, query, report);
+        Assert.assertTrue("API and Database do not match\n" + report, report.isClean());
+    }
+
     // Validates that the created user can log into the UI
     @Then("created user should be able to login Library UI")
     public void createdUserShouldBeAbleToLoginLibraryUI() {
@@ -0,0 +1,157 @@
+package com.library2.utilities;
+
+import io.restassured.builder.ResponseBuilder;
+import io.restassured.filter.FilterContext;
+import io.restassured.filter.OrderedFilter;
+import io.restassured.filter.time.TimingFilter;
+import io.restassured.http.Header;
+import io.restassured.http.Headers;
+import io.restassured.internal.RestAssuredResponseOptionsImpl;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Sends RestAssured requests with the non-blocking, HTTP/2 capable java.net.http.HttpClient.
+ * <p>
+ * As a filter it is the last one in the chain: RestAssured still builds the request and validates the
+ * response, only the network part is replaced, so all steps and assertions stay the same.
+ * {@link #sendAsync(FilterableRequestSpecification)} returns a CompletableFuture, so many requests can be
+ * in flight without one thread per request (e.g. load iterations).
+ * <p>
+ * Switch it on with api.engine=async (configuration.properties or -D), see {@link #filters()}.
+ */
+public class AsyncHttpEngine implements OrderedFilter {
+
+    public static final AsyncHttpEngine INSTANCE = new AsyncHttpEngine();
+
+    private static final boolean ENABLED = "async".equalsIgnoreCase(ConfigurationReader.getProperty("api.engine", "restassured"));
+
+    // headers HttpClient sets itself and does not allow us to set
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private static final ExecutorService callbacks = Executors.newFixedThreadPool(
+            Integer.parseInt(ConfigurationReader.getProperty("api.engine.threads", "2")), runnable -> {
+                Thread thread = new Thread(runnable, "async-http-engine");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofSeconds(30))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .executor(callbacks)
+            .build();
+
+    private AsyncHttpEngine() {
+    }
+
+    /**
+     * Filters to add to a RequestSpecification for the configured engine, empty for the default RestAssured engine
+     */
+    public static List<io.restassured.filter.Filter> filters() {
+        List<io.restassured.filter.Filter> filters = new ArrayList<>();
+        if (ENABLED) {
+            filters.add(INSTANCE);
+        }
+        return filters;
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec, FilterContext ctx) {
+        return sendAsync(requestSpec).join();
+    }
+
+    @Override
+    public int getOrder() {
+        return LOWEST_PRECEDENCE;       // must be the last filter, it does not call ctx.next
+    }
+
+    /**
+     * Sends the request without blocking the calling thread
+     *
+     * @param requestSpec request built by RestAssured
+     * @return future of the RestAssured response
+     */
+    public CompletableFuture<Response> sendAsync(FilterableRequestSpecification requestSpec) {
+        return sendAsync(toHttpRequest(requestSpec));
+    }
+
+    /**
+     * Sends a ready HttpRequest without blocking the calling thread
+     *
+     * @param request request to send
+     * @return future of the RestAssured response
+     */
+    public CompletableFuture<Response> sendAsync(HttpRequest request) {
+        long start = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(httpResponse -> toResponse(httpResponse, (System.nanoTime() - start) / 1_000_000));
+    }
+
+    private static HttpRequest toHttpRequest(FilterableRequestSpecification requestSpec) {
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(requestSpec.getURI()));
+        for (Header header : requestSpec.getHeaders()) {
+            if (!RESTRICTED_HEADERS.contains(header.getName().toLowerCase())) {
+                request.header(header.getName(), header.getValue());
+            }
+        }
+
+        byte[] body = body(requestSpec);
+        if (body.length > 0 && requestSpec.getContentType() != null && requestSpec.getHeaders().getValue("Content-Type") == null) {
+            request.header("Content-Type", requestSpec.getContentType());
+        }
+        return request.method(requestSpec.getMethod(), body.length > 0
+                ? HttpRequest.BodyPublishers.ofByteArray(body) : HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private static byte[] body(FilterableRequestSpecification requestSpec) {
+        Map<String, ?> formParams = requestSpec.getFormParams();
+        if (!formParams.isEmpty()) {
+            return formParams.entrySet().stream()
+                    .map(e -> URLEncoder.encode(e.getKey(), StandardCharsets.UTF_8) + "=" + URLEncoder.encode(String.valueOf(e.getValue()), StandardCharsets.UTF_8))
+                    .collect(Collectors.joining("&")).getBytes(StandardCharsets.UTF_8);
+        }
+        Object body = requestSpec.getBody();
+        if (body == null) {
+            return new byte[0];
+        }
+        return body instanceof byte[] ? (byte[]) body : body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Response toResponse(HttpResponse<byte[]> httpResponse, long millis) {
+        List<Header> headers = new ArrayList<>();
+        httpResponse.headers().map().forEach((name, values) -> values.forEach(value -> headers.add(new Header(name, value))));
+
+        String version = httpResponse.version() == HttpClient.Version.HTTP_2 ? "HTTP/2" : "HTTP/1.1";
+        Response response = new ResponseBuilder()
+                .setStatusCode(httpResponse.statusCode())
+                .setStatusLine(version + " " + httpResponse.statusCode())
+                .setHeaders(new Headers(headers))
+                .setContentType(httpResponse.headers().firstValue("Content-Type").orElse(""))
+                .setBody(httpResponse.body())
+                .build();
+        // RestAssured's TimingFilter never sees this response, so set the response time the same way it does
+        ((RestAssuredResponseOptionsImpl<?>) response).setFilterContextProperties(Map.of(TimingFilter.RESPONSE_TIME_MILLISECONDS, millis));
+        return response;
+    }
+
+}
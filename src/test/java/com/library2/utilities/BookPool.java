@@ -0,0 +1,267 @@
+package com.library2.utilities;
+
+import com.library2.models.AddResponse;
+import com.library2.models.Book;
+import io.restassured.response.Response;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Books created before they are needed, for scenarios that need a valid book but not a brand-new one.
+ * <p>
+ * On first use (or at suite start with book.pool.prestart) the pool takes the existing pool books (name starts
+ * with "SN_pool ") from the database and creates the missing ones through /add_book, in the background. A scenario
+ * leases a book exclusively; Hooks gives it back after the scenario, or retires it if the scenario failed (its state
+ * is unknown). A retired book is renamed to "SN_retired ...", so later runs do not take it again.
+ * When fewer than book.pool.min books are free, the pool is topped up in the background, also beyond book.pool.size
+ * while all other books are leased.
+ * Pool books are never deleted, so the next run reuses them instead of creating new ones.
+ * <p>
+ * configuration.properties (or -D from terminal):
+ * book.pool.prestart        fill the pool at suite start, default false
+ * book.pool.size            books the pool keeps, default 5
+ * book.pool.min             free books below which the pool is topped up, default 2
+ * book.pool.create.threads  parallel /add_book requests while filling, default 4
+ * book.pool.lease.timeout.s max wait for a free book, default 60
+ */
+public class BookPool {
+
+    private static final Logger log = Log.get(BookPool.class);
+
+    private BookPool() {
+    }
+
+    public static final String NAME_PREFIX = "SN_pool ";
+    public static final String RETIRED_PREFIX = "SN_retired ";
+
+    private static final int SIZE = Integer.parseInt(ConfigurationReader.getProperty("book.pool.size", "5"));
+    private static final int MIN_FREE = Integer.parseInt(ConfigurationReader.getProperty("book.pool.min", "2"));
+    private static final int CREATE_THREADS = Integer.parseInt(ConfigurationReader.getProperty("book.pool.create.threads", "4"));
+    private static final long LEASE_TIMEOUT_SECONDS = Long.parseLong(ConfigurationReader.getProperty("book.pool.lease.timeout.s", "60"));
+
+    private static final BlockingDeque<Book> available = new LinkedBlockingDeque<>();
+    private static final Set<String> known = ConcurrentHashMap.newKeySet();     // ids of all books in the pool, free or leased
+    private static final Set<String> retiredIds = ConcurrentHashMap.newKeySet(); // also when the rename in the database failed
+    private static final ThreadLocal<List<Book>> leasedByScenario = ThreadLocal.withInitial(ArrayList::new);
+
+    private static final AtomicBoolean started = new AtomicBoolean();
+    private static final AtomicBoolean filling = new AtomicBoolean();
+    private static final AtomicInteger reused = new AtomicInteger();
+    private static final AtomicInteger created = new AtomicInteger();
+    private static final AtomicInteger retired = new AtomicInteger();
+    private static final LatencyStats leaseWaitMillis = new LatencyStats();
+
+    // one thread decides what to create, the creators send the /add_book requests
+    private static final ExecutorService filler = Executors.newSingleThreadExecutor(daemon("book-pool-filler"));
+    private static final ExecutorService creators = Executors.newFixedThreadPool(CREATE_THREADS, daemon("book-pool-creator"));
+
+    /**
+     * Starts filling the pool in the background, only the first call does something
+     */
+    public static void start() {
+        if (started.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(() -> {
+                reuseExistingBooks();
+                topUp();
+            }, filler);
+        }
+    }
+
+    /**
+     * Takes a free book for the current scenario, waits for one if the pool is empty
+     *
+     * @return a book nobody else uses until it is released
+     */
+    public static Book lease() {
+        start();
+        long begin = System.nanoTime();
+        Book book;
+        try {
+            book = available.pollFirst(LEASE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a pool book", e);
+        }
+        if (book == null) {
+            throw new IllegalStateException("No pool book became free in " + LEASE_TIMEOUT_SECONDS + " s");
+        }
+        leaseWaitMillis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+        leasedByScenario.get().add(book);
+        if (available.size() < MIN_FREE) {
+            CompletableFuture.runAsync(BookPool::topUp, filler);
+        }
+        return book;
+    }
+
+    /**
+     * Gives back all books leased by the current scenario (Hooks)
+     *
+     * @param retire true to take them out of the pool instead, e.g. after a failed scenario
+     */
+    public static void releaseAll(boolean retire) {
+        List<Book> leased = leasedByScenario.get();
+        boolean anyRetired = retire && !leased.isEmpty();
+        for (Book book : leased) {
+            if (retire) {
+                known.remove(book.getId());
+                retiredIds.add(book.getId());
+                renameRetired(book);
+                retired.incrementAndGet();
+            } else {
+                available.addLast(book);
+            }
+        }
+        leased.clear();
+        if (anyRetired) {
+            CompletableFuture.runAsync(BookPool::topUp, filler);
+        }
+    }
+
+    /**
+     * @return counts of reused, created and retired books and the lease wait times, empty if the pool was not used
+     */
+    public static String report() {
+        if (!started.get()) {
+            return "";
+        }
+        return String.format("Book pool: size %d, free %d, reused %d, created %d, retired %d, lease wait: %s",
+                SIZE, available.size(), reused.get(), created.get(), retired.get(), leaseWaitMillis.summary("ms"));
+    }
+
+    /**
+     * Sets the counters and lease wait times of the report back to zero, e.g. between TestDaemon runs.
+     * The pool keeps its books.
+     */
+    public static void clearReport() {
+        reused.set(0);
+        created.set(0);
+        retired.set(0);
+        leaseWaitMillis.clear();
+    }
+
+    /*
+    The name prefix is what makes a book a pool book: without it no later run takes the book
+     */
+    private static void renameRetired(Book book) {
+        String sql = "UPDATE books SET name = CONCAT(?, SUBSTRING(name, ?)) WHERE id = ? AND name LIKE ?";
+        try (Connection connection = DB_Utils.openConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, RETIRED_PREFIX);
+            statement.setInt(2, NAME_PREFIX.length() + 1);
+            statement.setString(3, book.getId());
+            statement.setString(4, NAME_PREFIX + "%");
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            log.error("ERROR OCCURRED WHILE RETIRING POOL BOOK {} {}", book.getId(), e.getMessage());
+        }
+    }
+
+    /*
+    Pool books of earlier runs, found by their name prefix (retired books are renamed, see renameRetired)
+     */
+    private static void reuseExistingBooks() {
+        String sql = "SELECT id, name, isbn, year, author, book_category_id, description FROM books WHERE name LIKE ? ORDER BY id DESC LIMIT ?";
+        try (Connection connection = DB_Utils.openConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, NAME_PREFIX + "%");
+            statement.setInt(2, SIZE);
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    Book book = new Book();
+                    book.setId(result.getString("id"));
+                    book.setName(result.getString("name"));
+                    book.setIsbn(result.getString("isbn"));
+                    book.setYear(result.getString("year"));
+                    book.setAuthor(result.getString("author"));
+                    book.setBookCategoryId(result.getString("book_category_id"));
+                    book.setDescription(result.getString("description"));
+                    if (!retiredIds.contains(book.getId()) && known.add(book.getId())) {
+                        available.addLast(book);
+                        reused.incrementAndGet();
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.error("ERROR OCCURRED WHILE LOOKING FOR EXISTING POOL BOOKS, NEW ONES WILL BE CREATED {}", e.getMessage());
+        }
+    }
+
+    /*
+    Creates books until the pool has SIZE books and at least MIN_FREE of them are free, one top-up at a time.
+    Leases during a top-up are covered by the next round, a round that creates nothing ends it.
+     */
+    private static void topUp() {
+        if (!filling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int missing;
+            while ((missing = Math.max(SIZE - known.size(), MIN_FREE - available.size())) > 0) {
+                int before = created.get();
+                List<CompletableFuture<Void>> creations = new ArrayList<>();
+                for (int i = 0; i < missing; i++) {
+                    creations.add(CompletableFuture.runAsync(BookPool::createBook, creators));
+                }
+                creations.forEach(CompletableFuture::join);
+                if (created.get() == before) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("ERROR OCCURRED WHILE FILLING BOOK POOL {}", e.getMessage());
+        } finally {
+            filling.set(false);
+        }
+    }
+
+    private static void createBook() {
+        Map<String, Object> bookMap = LibraryUtils.createRandomBook();
+        bookMap.put("name", NAME_PREFIX + bookMap.get("name").toString().replaceFirst("^SN_test ", ""));
+
+        Response response = RequestSpecs.given("librarian", RequestSpecs.Family.WRITE)
+                .formParams(bookMap)
+                .post("/add_book");
+        if (response.getStatusCode() != 200) {
+            throw new IllegalStateException("Pool book could not be created, status " + response.getStatusCode() + ": " + response.asString());
+        }
+
+        Book book = new Book();
+        book.setId(TypedBody.read(response.asByteArray(), AddResponse.class).getBookId());
+        book.setName(bookMap.get("name").toString());
+        book.setIsbn(bookMap.get("isbn").toString());
+        book.setYear(bookMap.get("year").toString());
+        book.setAuthor(bookMap.get("author").toString());
+        book.setBookCategoryId(bookMap.get("book_category_id").toString());
+        book.setDescription(bookMap.get("description").toString());
+        known.add(book.getId());
+        available.addLast(book);
+        created.incrementAndGet();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
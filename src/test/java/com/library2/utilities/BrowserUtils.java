@@ -1,5 +1,6 @@
 package com.library2.utilities;
 
+import org.apache.logging.log4j.Logger;
 import org.junit.Assert;
 import org.openqa.selenium.*;
 import org.openqa.selenium.interactions.Actions;
@@ -15,6 +16,8 @@ import java.util.Set;
 
 public class BrowserUtils {
 
+    private static final Logger log = Log.get(BrowserUtils.class);
+
     /*
   This method will accept int (in seconds)
   and execute Thread.sleep method for given duration
@@ -37,7 +40,7 @@ public class BrowserUtils {
         for (String each : allWindowHandles) {
 
             Driver.getDriver().switchTo().window(each);
-            System.out.println("Current URL: " + Driver.getDriver().getCurrentUrl());
+            log.info("Current URL: {}", Driver.getDriver().getCurrentUrl());
 
             if (Driver.getDriver().getCurrentUrl().contains(expectedInURL)) {
                 break;
@@ -149,14 +152,21 @@ public class BrowserUtils {
 
     /**
      * return a list of string from a list of elements
+     * all texts are read with one script execution instead of one getText() call per element
      * <p>
      * .@param list of webelements
      * . @return list of string
      */
     public static List<String> getElementsText(List<WebElement> list) {
+        if (list.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // innerText is the rendered text like getText(), line breaks included; trimmed like getText()
+        List<?> texts = (List<?>) ((JavascriptExecutor) Driver.getDriver()).executeScript(
+                "return arguments[0].map(function (e) { return e.innerText.trim(); });", list);
         List<String> elemTexts = new ArrayList<>();
-        for (WebElement el : list) {
-            elemTexts.add(el.getText());
+        for (Object text : texts) {
+            elemTexts.add(String.valueOf(text));
         }
         return elemTexts;
     }
@@ -170,12 +180,7 @@ public class BrowserUtils {
     public static List<String> getElementsText(By locator) {
 
         List<WebElement> elems = Driver.getDriver().findElements(locator);
-        List<String> elemTexts = new ArrayList<>();
-
-        for (WebElement el : elems) {
-            elemTexts.add(el.getText());
-        }
-        return elemTexts;
+        return getElementsText(elems);
     }
 
     /**
@@ -26,4 +26,13 @@ public class ConfigurationReader {
     public static String getProperty(String keyword){                                       //4- Use "properties" object to read from the file (read properties)
         return properties.getProperty(keyword);
     }
+
+    /*
+    Same as getProperty(keyword), but a value passed from terminal (-Dkeyword=value) wins over the properties file,
+    and the defaultValue is returned if the keyword is not set in either place.
+     */
+    public static String getProperty(String keyword, String defaultValue){
+        String value = System.getProperty(keyword) != null ? System.getProperty(keyword) : properties.getProperty(keyword);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
 }
\ No newline at end of file
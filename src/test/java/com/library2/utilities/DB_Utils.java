@@ -1,18 +1,29 @@
 package com.library2.utilities;
 
+import org.apache.logging.log4j.Logger;
 import org.junit.Assert;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public class DB_Utils {
 
+    private static final Logger log = Log.get(DB_Utils.class);
+
     // declaring at class level so all methods can access
     private static Connection con;
     private static Statement stm;
     private static ResultSet rs;
     private static ResultSetMetaData rsmd;
 
+    // result sets of runQuery until they are closed: a second runQuery before destroy() leaves the first one open (SoakRunner counts them)
+    private static final Set<ResultSet> openResultSets = ConcurrentHashMap.newKeySet();
+
+    // TestDaemon: keep the connection open between scenarios and runs, see keepConnection()
+    private static volatile boolean keepConnection;
+
 
     /**
      * Create Connection by jdbc url and username , password provided
@@ -26,9 +37,9 @@ public class DB_Utils {
 
         try {
             con = DriverManager.getConnection(url, username, password);
-            System.out.println("CONNECTION SUCCESSFUL");
+            log.info("CONNECTION SUCCESSFUL");
         } catch (Exception e) {
-            System.out.println("CONNECTION HAS FAILED " + e.getMessage());
+            log.error("CONNECTION HAS FAILED {}", e.getMessage());
         }
 
     }
@@ -38,26 +49,47 @@ public class DB_Utils {
      * Create connection method , just checking one connection successful or not
      */
     public static void createConnection() {
+        if (keepConnection && isConnectionValid()) {
+            return;     // the kept connection is still alive, no new login to the database
+        }
         // Read database URL from configuration.properties
         String url = ConfigurationReader.getProperty("dbUrl");
+        String[] credentials = credentials();
 
+        // Create database connection
+        createConnection(url, credentials[0], credentials[1]);
+    }
+
+    /**
+     * Opens a new connection with the same settings as createConnection(), for code that runs beside the
+     * scenario's connection (e.g. BookPool on its own thread). The caller must close it.
+     *
+     * @return new connection, not shared with the other DB_Utils methods
+     */
+    public static Connection openConnection() throws SQLException {
+        String[] credentials = credentials();
+        return DriverManager.getConnection(ConfigurationReader.getProperty("dbUrl"), credentials[0], credentials[1]);
+    }
+
+    /*
+    username and password
+     */
+    private static String[] credentials() {
         // Check environment variables for username and password
         String username = System.getenv("DB_USERNAME");
         String password = System.getenv("DB_PASSWORD");
 
         // Fallback to configuration.properties if environment variables are null
         if (username == null || username.isEmpty()) {
-            System.out.println("Environment variable DB_USERNAME not found, reading from configuration.properties...");
+            log.info("Environment variable DB_USERNAME not found, reading from configuration.properties...");
             username = ConfigurationReader.getProperty("library2.db.username");
         }
 
         if (password == null || password.isEmpty()) {
-            System.out.println("Environment variable DB_PASSWORD not found, reading from configuration.properties...");
+            log.info("Environment variable DB_PASSWORD not found, reading from configuration.properties...");
             password = ConfigurationReader.getProperty("library2.db.password");
         }
-
-        // Create database connection
-        createConnection(url, username, password);
+        return new String[]{username, password};
     }
 
 
@@ -70,18 +102,65 @@ public class DB_Utils {
      */
     public static ResultSet runQuery(String sql) {
 
+        long start = System.nanoTime();
         try {
             stm = con.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
             rs = stm.executeQuery(sql); // setting the value of ResultSet object
             rsmd = rs.getMetaData();  // setting the value of ResultSetMetaData for reuse
+            openResultSets();         // forgets the closed ones
+            openResultSets.add(rs);
         } catch (Exception e) {
-            System.out.println("ERROR OCCURRED WHILE RUNNING QUERY " + e.getMessage());
+            log.error("ERROR OCCURRED WHILE RUNNING QUERY {}", e.getMessage());
+        } finally {
+            long nanos = System.nanoTime() - start;
+            MetricsRegistry.DB_QUERY.observeNanos(nanos);
+            QueryProfiler.record(con, sql, nanos, DB_Utils::getRowCount);
         }
 
         return rs;
 
     }
 
+    /**
+     * Run the sql query and give every row to the consumer as soon as it is read, without keeping the rows.
+     * It uses its own forward-only statement (MySQL streams the rows one by one),
+     * so the ResultSet of runQuery is not affected and the table size does not matter.
+     *
+     * @param sql the query to run
+     * @param rowConsumer receives each row as Map, key: column label, value: cell value
+     */
+    public static void streamQuery(String sql, Consumer<Map<String, String>> rowConsumer) {
+
+        long start = System.nanoTime();
+        long rows = 0;
+        try (Statement statement = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(Integer.MIN_VALUE);  // MySQL driver streams rows instead of loading all of them
+
+            try (ResultSet result = statement.executeQuery(sql)) {
+                ResultSetMetaData metaData = result.getMetaData();
+                String[] columnNames = new String[metaData.getColumnCount()];
+                for (int colIndex = 1; colIndex <= columnNames.length; colIndex++) {
+                    columnNames[colIndex - 1] = metaData.getColumnLabel(colIndex);
+                }
+
+                while (result.next()) {
+                    Map<String, String> rowMap = new LinkedHashMap<>();
+                    for (int colIndex = 1; colIndex <= columnNames.length; colIndex++) {
+                        rowMap.put(columnNames[colIndex - 1], result.getString(colIndex));
+                    }
+                    rowConsumer.accept(rowMap);
+                    rows++;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("ERROR OCCURRED WHILE streamQuery " + e.getMessage(), e);
+        }
+        // includes the time of the consumer, the rows are read while it runs
+        long rowCount = rows;
+        QueryProfiler.record(con, sql, System.nanoTime() - start, () -> rowCount);
+
+    }
+
     /**
      * destroy method to clean up all the resources after being used
      */
@@ -91,11 +170,60 @@ public class DB_Utils {
         try {
             if (rs != null) rs.close();
             if (stm != null) stm.close();
-            if (con != null) con.close();
+            if (con != null && !keepConnection) con.close();
         } catch (Exception e) {
-            System.out.println("ERROR OCCURRED WHILE CLOSING RESOURCES " + e.getMessage());
+            log.error("ERROR OCCURRED WHILE CLOSING RESOURCES {}", e.getMessage());
+        }
+
+    }
+
+    /**
+     * When it is on, destroy() closes only the statement and result set, and createConnection() reuses the
+     * connection while it passes the health check. Used by TestDaemon. Switching it off closes the connection.
+     *
+     * @param keep true to keep the connection between scenarios
+     */
+    public static void keepConnection(boolean keep) {
+        keepConnection = keep;
+        if (!keep) {
+            destroy();
+        }
+    }
+
+    /**
+     * @return the connection of createConnection(), null if there is none
+     */
+    public static Connection getConnection() {
+        return con;
+    }
+
+    /**
+     * @return number of result sets returned by runQuery that are not closed yet, by destroy() or with their connection
+     */
+    public static int openResultSets() {
+        openResultSets.removeIf(DB_Utils::isClosed);
+        return openResultSets.size();
+    }
+
+    private static boolean isClosed(ResultSet resultSet) {
+        try {
+            return resultSet.isClosed();
+        } catch (SQLException e) {
+            return true;
         }
+    }
 
+    /**
+     * health check of the current connection
+     *
+     * @return true if there is an open connection that answers within 2 seconds
+     */
+    public static boolean isConnectionValid() {
+        try {
+            return con != null && con.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
     }
 
     /**
@@ -106,7 +234,7 @@ public class DB_Utils {
         try {
             rs.beforeFirst();
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("ERROR OCCURRED WHILE RESETTING CURSOR", e);
         }
 
     }
@@ -125,7 +253,7 @@ public class DB_Utils {
             rs.last();
             rowCount = rs.getRow();
         } catch (Exception e) {
-            System.out.println("ERROR OCCURRED WHILE GETTING ROW COUNT " + e.getMessage());
+            log.error("ERROR OCCURRED WHILE GETTING ROW COUNT {}", e.getMessage());
         } finally {
             resetCursor();
         }
@@ -148,7 +276,7 @@ public class DB_Utils {
             columnCount = rsmd.getColumnCount();
 
         } catch (Exception e) {
-            System.out.println("ERROR OCCURRED WHILE GETTING COLUMN COUNT " + e.getMessage());
+            log.error("ERROR OCCURRED WHILE GETTING COLUMN COUNT {}", e.getMessage());
         }
 
         return columnCount;
@@ -166,12 +294,13 @@ public class DB_Utils {
         List<String> columnNameLst = new ArrayList<>();
 
         try {
-            for (int colIndex = 1; colIndex <= getColumnCount(); colIndex++) {
+            int columnCount = getColumnCount();
+            for (int colIndex = 1; colIndex <= columnCount; colIndex++) {
                 String columnName = rsmd.getColumnName(colIndex);
                 columnNameLst.add(columnName);
             }
         } catch (Exception e) {
-            System.out.println("ERROR OCCURRED WHILE getAllColumnNamesAsList " + e.getMessage());
+            log.error("ERROR OCCURRED WHILE getAllColumnNamesAsList {}", e.getMessage());
         }
 
         return columnNameLst;
@@ -203,7 +332,7 @@ public class DB_Utils {
 
 
         } catch (Exception e) {
-            System.out.println("ERROR OCCURRED WHILE getRowDataAsList " + e.getMessage());
+            log.error("ERROR OCCURRED WHILE getRowDataAsList {}", e.getMessage());
         } finally {
             resetCursor();
         }
@@ -229,7 +358,7 @@ public class DB_Utils {
             cellValue = rs.getString(columnIndex);
 
         } catch (Exception e) {
-            System.out.println("ERROR OCCURRED WHILE getCellValue " + e.getMessage());
+            log.error("ERROR OCCURRED WHILE getCellValue {}", e.getMessage());
         } finally {
             resetCursor();
         }
@@ -253,7 +382,7 @@ public class DB_Utils {
             cellValue = rs.getString(columnName);
 
         } catch (Exception e) {
-            System.out.println("ERROR OCCURRED WHILE getCellValue " + e.getMessage());
+            log.error("ERROR OCCURRED WHILE getCellValue {}", e.getMessage());
         } finally {
             resetCursor();
         }
@@ -292,7 +421,7 @@ public class DB_Utils {
             }
 
         } catch (Exception e) {
-            System.out.println("ERROR OCCURRED WHILE getColumnDataAsList " + e.getMessage());
+            log.error("ERROR OCCURRED WHILE getColumnDataAsList {}", e.getMessage());
         } finally {
             resetCursor();
         }
@@ -321,7 +450,7 @@ public class DB_Utils {
             }
 
         } catch (Exception e) {
-            System.out.println("ERROR OCCURRED WHILE getColumnDataAsList " + e.getMessage());
+            log.error("ERROR OCCURRED WHILE getColumnDataAsList {}", e.getMessage());
         } finally {
             resetCursor();
         }
@@ -341,19 +470,20 @@ public class DB_Utils {
         resetCursor();
         try {
 
+            StringBuilder table = new StringBuilder();
             while (rs.next()) {
 
                 for (int colIndex = 1; colIndex <= columnCount; colIndex++) {
-
-                    //System.out.print( rs.getString(colIndex) + "\t" );
-                    System.out.printf("%-25s", rs.getString(colIndex));
+                    table.append(String.format("%-25s", rs.getString(colIndex)));
                 }
-                System.out.println();
+                table.append(System.lineSeparator());
 
             }
+            // one event for the whole table, its lines stay together in parallel runs
+            log.info("All data:{}{}", System.lineSeparator(), table);
 
         } catch (Exception e) {
-            System.out.println("ERROR OCCURRED WHILE displayAllData " + e.getMessage());
+            log.error("ERROR OCCURRED WHILE displayAllData {}", e.getMessage());
         } finally {
             resetCursor();
         }
@@ -384,7 +514,7 @@ public class DB_Utils {
             }
 
         } catch (Exception e) {
-            System.out.println("ERROR OCCURRED WHILE getRowMap " + e.getMessage());
+            log.error("ERROR OCCURRED WHILE getRowMap {}", e.getMessage());
         } finally {
             resetCursor();
         }
@@ -396,25 +526,72 @@ public class DB_Utils {
     /**
      * We know how to store one row as map object
      * Now Store All rows as List of Map object
+     * All rows are read in one pass over the ResultSet (QueryResult), instead of jumping to every row one by one.
      *
      * @return List of Map object that contain each row data as Map<String,String>
      */
     public static List<Map<String, String>> getAllRowAsListOfMap() {
 
         List<Map<String, String>> allRowLstOfMap = new ArrayList<>();
-        int rowCount = getRowCount();
-        // move from first row till last row
-        // get each row as map object and add it to the list
 
-        for (int rowIndex = 1; rowIndex <= rowCount; rowIndex++) {
+        try {
+            resetCursor();
+            QueryResult result = QueryResult.from(rs);      // one pass over the ResultSet instead of rs.absolute per row
+            List<String> columnNames = getAllColumnNamesAsList();  // keyed by column name like getRowMap
+            for (int rowNum = 1; rowNum <= result.getRowCount(); rowNum++) {
+                Map<String, String> rowMap = new LinkedHashMap<>();
+                for (int colIndex = 1; colIndex <= columnNames.size(); colIndex++) {
+                    rowMap.put(columnNames.get(colIndex - 1), result.getString(rowNum, colIndex));
+                }
+                allRowLstOfMap.add(rowMap);
+            }
+        } catch (Exception e) {
+            log.error("ERROR OCCURRED WHILE getAllRowAsListOfMap {}", e.getMessage());
+        } finally {
+            resetCursor();
+        }
+
+        return allRowLstOfMap;
 
-            Map<String, String> rowMap = getRowMap(rowIndex);
-            allRowLstOfMap.add(rowMap);
+    }
 
+    /**
+     * Read the whole ResultSet of the last runQuery into a compact, column by column QueryResult.
+     * Column names are read once, repeated values are stored once, and column lookup by name is O(1).
+     *
+     * @return all rows of the last query
+     */
+    public static QueryResult getResult() {
+
+        try {
+            resetCursor();
+            return QueryResult.from(rs);
+        } catch (Exception e) {
+            throw new IllegalStateException("ERROR OCCURRED WHILE getResult " + e.getMessage(), e);
+        } finally {
+            resetCursor();
         }
-        resetCursor();
 
-        return allRowLstOfMap;
+    }
+
+    /**
+     * Run the sql query with its own statement and return all rows as QueryResult.
+     * It does not change the ResultSet used by the other methods, so it is safe to call next to them.
+     *
+     * @param sql the query to run
+     * @return all rows of the query
+     */
+    public static QueryResult query(String sql) {
+
+        long start = System.nanoTime();
+        try (Statement statement = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             ResultSet result = statement.executeQuery(sql)) {
+            QueryResult queryResult = QueryResult.from(result);
+            QueryProfiler.record(con, sql, System.nanoTime() - start, queryResult::getRowCount);
+            return queryResult;
+        } catch (SQLException e) {
+            throw new IllegalStateException("ERROR OCCURRED WHILE RUNNING QUERY " + e.getMessage(), e);
+        }
 
     }
 
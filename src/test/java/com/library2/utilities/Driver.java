@@ -1,15 +1,33 @@
 package com.library2.utilities;
 
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.edge.EdgeDriver;
 import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.logging.LogType;
+import org.openqa.selenium.logging.LoggingPreferences;
 
 import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 
 public class Driver {
 
+    private static final Logger log = Log.get(Driver.class);
 
     //create a private constructor to remove access to this object
     private Driver(){}
@@ -29,6 +47,38 @@ public class Driver {
 
     private static InheritableThreadLocal<WebDriver> driverPool = new InheritableThreadLocal<>();           // driver class will provide separate webdriver object per thread
 
+    /*
+        Hooks switches this off for scenarios without @ui tag, so an API or DB scenario can never open a browser by accident.
+        It is "true" by default for code running outside of a scenario.
+     */
+    private static InheritableThreadLocal<Boolean> browserAllowed = new InheritableThreadLocal<>();
+
+    private static final AtomicInteger browserStarts = new AtomicInteger();                                // how many browsers were opened in this run
+
+    /*
+        Browsers that are being started in the background for a thread, see prewarm()
+     */
+    private static InheritableThreadLocal<Prewarm> warmingPool = new InheritableThreadLocal<>();
+    private static InheritableThreadLocal<Prewarm> lastPrewarm = new InheritableThreadLocal<>();
+    private static final AtomicLong hiddenStartupMillis = new AtomicLong();
+
+    /*
+        Browsers kept open between scenarios while keepBrowsers is on (TestDaemon), reused by the next getDriver()
+     */
+    private static volatile boolean keepBrowsers;
+    private static final ConcurrentLinkedDeque<WebDriver> parkedBrowsers = new ConcurrentLinkedDeque<>();
+
+    /*
+        Every browser created here until it is quit: in use by a thread, parked, pre-warming or leaked (SoakRunner counts them)
+     */
+    private static final Set<WebDriver> openBrowsers = ConcurrentHashMap.newKeySet();
+
+    private static final ExecutorService warmer = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "browser-prewarm");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /*
     Create a re-usable utility method which will return the same driver instance once we call it.
     If an instance doesn't exist, it will create first, and then it will always return same instance.
@@ -37,62 +87,18 @@ public class Driver {
 
         if(driverPool.get() == null){
 
-            /*
-                if we pass the driver from terminal then use that one
-                if we do not pass the driver from terminal then use the one properties file
-             */
-            String browser = System.getProperty("browser") != null ? browser = System.getProperty("browser") : ConfigurationReader.getProperty("browser");
-
-            /*
-            Depending on the browserType
-            switch statement will determine the "case", and open the matching browser.
-             */
-            switch (browser){
-//                case "remote-chrome":
-//                    try {
-//                        // assign your grid server address
-//                        String gridAddress = "174.129.57.20";
-//                        URL url = new URL("http://"+ gridAddress + ":4444/wd/hub");
-//                        DesiredCapabilities desiredCapabilities = new DesiredCapabilities();
-//                        desiredCapabilities.setBrowserName("chrome");
-//                        driverPool.set(new RemoteWebDriver(url, desiredCapabilities));
-//                        //driverPool.set(new RemoteWebDriver(new URL("http://0.0.0.0:4444/wd/hub"),desiredCapabilities));
-//
-//                    } catch (Exception e) {
-//                        e.printStackTrace();
-//                    }
-//                    break;
-                case "chrome":
-                    driverPool.set(new ChromeDriver());
-                    driverPool.get().manage().window().maximize();
-                    driverPool.get().manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
-                    break;
-                case "firefox":
-                    driverPool.set(new FirefoxDriver());
-                    driverPool.get().manage().window().maximize();
-                    driverPool.get().manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
-                    break;
-                case "edge":
-                    driverPool.set(new EdgeDriver());
-                    driverPool.get().manage().window().maximize();
-                    driverPool.get().manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
-                    break;
-                // opens Browser in the background
-                case "headless-chrome":
-                    ChromeOptions options = new ChromeOptions();
-                    options.addArguments("--headless=new");
-                    driverPool.set(new ChromeDriver(options));
-                    driverPool.get().manage().window().maximize();
-                    driverPool.get().manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
-                    break;
-                // for Driver updated version
-                case "remote-allow-origins":
-                    ChromeOptions options2 = new ChromeOptions();
-                    options2.addArguments("--remote-allow-origins=*");
-                    driverPool.set(new ChromeDriver(options2));
-                    driverPool.get().manage().window().maximize();
-                    driverPool.get().manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
-                    break;
+            if (Boolean.FALSE.equals(browserAllowed.get())) {
+                throw new IllegalStateException("Browser is not allowed in this scenario, add @ui tag to the scenario if it needs a browser");
+            }
+
+            Prewarm prewarm = warmingPool.get();
+            if (prewarm != null) {
+                // a browser is already being started in the background (see prewarm), take it over
+                warmingPool.remove();
+                driverPool.set(prewarm.handOver());
+            } else {
+                WebDriver parked = takeParkedBrowser();
+                driverPool.set(parked != null ? parked : createDriver(browserType()));
             }
 
         }
@@ -101,14 +107,348 @@ public class Driver {
 
     }
 
+    /*
+    Starts creating the browser of the current thread on a background thread and returns immediately.
+    The setUp runs on the new browser before it is handed over, e.g. opening the login page.
+    The next getDriver() call on this thread waits for it (if it is not ready yet) and uses it.
+     */
+    public static void prewarm(Consumer<WebDriver> setUp){
+        if (driverPool.get() != null || warmingPool.get() != null) {
+            return;
+        }
+        if (Boolean.FALSE.equals(browserAllowed.get())) {
+            throw new IllegalStateException("Browser is not allowed in this scenario, add @ui tag to the scenario if it needs a browser");
+        }
+        String browser = browserType();
+        WebDriver parked = takeParkedBrowser();
+        warmingPool.set(new Prewarm(() -> {
+            WebDriver driver = parked != null ? parked : createDriver(browser);
+            try {
+                setUp.accept(driver);
+            } catch (RuntimeException e) {
+                // nobody gets this browser: handOver and discard only see the exception
+                quitQuietly(driver);
+                throw e;
+            }
+            return driver;
+        }));
+    }
+
+    /*
+    Startup time of the last pre-warmed browser of this thread and how much of it was hidden behind other steps.
+    Returns null if the browser of this thread was not pre-warmed.
+     */
+    public static String lastPrewarmReport(){
+        Prewarm prewarm = lastPrewarm.get();
+        if (prewarm == null) {
+            return null;
+        }
+        return String.format("Browser startup %d ms, %d ms of it hidden behind API/DB steps, waited %d ms",
+                prewarm.startupMillis, prewarm.startupMillis - prewarm.waitedMillis, prewarm.waitedMillis);
+    }
+
+    /*
+    Total browser startup time hidden by pre-warming in this run
+     */
+    public static long hiddenStartupMillis(){
+        return hiddenStartupMillis.get();
+    }
+
+    /*
+        if we pass the driver from terminal then use that one
+        if we do not pass the driver from terminal then use the one properties file
+     */
+    private static String browserType(){
+        return System.getProperty("browser") != null ? System.getProperty("browser") : ConfigurationReader.getProperty("browser");
+    }
+
+    private static WebDriver createDriver(String browser){
+
+        long start = System.nanoTime();
+        WebDriver driver = null;
+
+        /*
+        Depending on the browserType
+        switch statement will determine the "case", and open the matching browser.
+         */
+        switch (browser){
+//            case "remote-chrome":
+//                try {
+//                    // assign your grid server address
+//                    String gridAddress = "174.129.57.20";
+//                    URL url = new URL("http://"+ gridAddress + ":4444/wd/hub");
+//                    DesiredCapabilities desiredCapabilities = new DesiredCapabilities();
+//                    desiredCapabilities.setBrowserName("chrome");
+//                    driver = new RemoteWebDriver(url, desiredCapabilities);
+//                    //driver = new RemoteWebDriver(new URL("http://0.0.0.0:4444/wd/hub"),desiredCapabilities);
+//
+//                } catch (Exception e) {
+//                    e.printStackTrace();
+//                }
+//                break;
+            case "chrome":
+                driver = new ChromeDriver(chromeOptions());
+                driver.manage().window().maximize();
+                driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+                break;
+            case "firefox":
+                driver = new FirefoxDriver();
+                driver.manage().window().maximize();
+                driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+                break;
+            case "edge":
+                driver = new EdgeDriver();
+                driver.manage().window().maximize();
+                driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+                break;
+            // opens Browser in the background
+            case "headless-chrome":
+                ChromeOptions options = chromeOptions();
+                options.addArguments("--headless=new");
+                driver = new ChromeDriver(options);
+                driver.manage().window().maximize();
+                driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+                break;
+            // headless browsers on chromedriver nodes of this machine, with a slot queue (see LocalGrid)
+            case "local-grid":
+                ChromeOptions gridOptions = chromeOptions();
+                gridOptions.addArguments("--headless=new", "--window-size=1920,1080");
+                driver = LocalGrid.getInstance().newSession(gridOptions);
+                driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+                break;
+            // for Driver updated version
+            case "remote-allow-origins":
+                ChromeOptions options2 = chromeOptions();
+                options2.addArguments("--remote-allow-origins=*");
+                driver = new ChromeDriver(options2);
+                driver.manage().window().maximize();
+                driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+                break;
+        }
+
+        if (driver != null) {
+            openBrowsers.add(driver);
+            browserStarts.incrementAndGet();
+            MetricsRegistry.BROWSER_START.observeNanos(System.nanoTime() - start, browser);
+        }
+
+        return driver;
+
+    }
+
+    /*
+    true if a browser is already open for the current thread, it does not open a new one
+     */
+    public static boolean isStarted(){
+        return driverPool.get() != null;
+    }
+
+    /*
+    Allows or forbids opening a browser for the current thread (see Hooks)
+     */
+    public static void allowBrowser(boolean allowed){
+        browserAllowed.set(allowed);
+    }
+
+    /*
+    Number of browsers opened since the JVM started
+     */
+    public static int browserStarts(){
+        return browserStarts.get();
+    }
+
+    /*
+    Number of browsers started and not quit yet, including the parked ones
+     */
+    public static int openBrowsers(){
+        return openBrowsers.size();
+    }
+
+    /*
+    Quits a browser of this class that is not (or no longer) the browser of the current thread, e.g. at shutdown
+     */
+    public static void quit(WebDriver driver){
+        quitQuietly(driver);
+    }
+
+    /*
+    Chrome options shared by all chrome cases.
+    Browser console and DevTools performance logs are enabled, so PageMetrics and FailureArtifacts can read them.
+     */
+    private static ChromeOptions chromeOptions(){
+        LoggingPreferences logs = new LoggingPreferences();
+        logs.enable(LogType.BROWSER, Level.ALL);
+        logs.enable(LogType.PERFORMANCE, Level.ALL);
+        ChromeOptions options = new ChromeOptions();
+        options.setCapability("goog:loggingPrefs", logs);
+        return options;
+    }
+
+    /*
+    When it is on, closeDriver() does not quit the browser: it cleans it (cookies, storage, blank page) and keeps it
+    for the next scenario. Used by TestDaemon, where browser launch would be most of the time of a short run.
+    Switching it off quits the kept browsers.
+     */
+    public static void keepBrowsers(boolean keep){
+        keepBrowsers = keep;
+        if (!keep) {
+            WebDriver parked;
+            while ((parked = parkedBrowsers.poll()) != null) {
+                quitQuietly(parked);
+            }
+        }
+    }
+
+    /*
+    Number of browsers kept open for reuse
+     */
+    public static int parkedBrowsers(){
+        return parkedBrowsers.size();
+    }
+
+    /*
+    A kept browser that still responds, dead ones are quit and skipped
+     */
+    private static WebDriver takeParkedBrowser(){
+        WebDriver parked;
+        while ((parked = parkedBrowsers.poll()) != null) {
+            try {
+                parked.getWindowHandle();       // health check: fails if the browser or its session is gone
+                return parked;
+            } catch (Exception e) {
+                log.warn("KEPT BROWSER IS NOT RESPONDING, STARTING A NEW ONE {}", e.getMessage());
+                quitQuietly(parked);
+            }
+        }
+        return null;
+    }
+
+    /*
+    Cleans a browser so the next scenario starts like in a new one, false if it could not be cleaned
+     */
+    private static boolean resetBrowser(WebDriver driver){
+        try {
+            driver.manage().deleteAllCookies();
+            if (driver instanceof JavascriptExecutor) {
+                ((JavascriptExecutor) driver).executeScript("try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}");
+            }
+            driver.get("about:blank");
+            return true;
+        } catch (Exception e) {
+            log.warn("BROWSER COULD NOT BE RESET {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static void quitQuietly(WebDriver driver){
+        try {
+            driver.quit();
+        } catch (Exception e) {
+            log.warn("BROWSER COULD NOT BE CLOSED {}", e.getMessage());
+        } finally {
+            openBrowsers.remove(driver);
+        }
+    }
+
     /*
     Create a new Driver.closeDriver(); it will use .quit() method to quit browsers, and then set the driver value back to null.
      */
     public static void closeDriver(){
+        Prewarm unused = warmingPool.get();
+        if (unused != null){
+            // the scenario ended before it needed the pre-warmed browser, quit it anyway
+            warmingPool.remove();
+            unused.discard();
+        }
+        lastPrewarm.remove();
+        if (driverPool.get()!=null && keepBrowsers){
+            // TestDaemon: keep the browser for the next scenario instead of launching a new one
+            WebDriver driver = driverPool.get();
+            driverPool.remove();
+            PageMetrics.reset();
+            if (resetBrowser(driver)) {
+                parkedBrowsers.push(driver);
+            } else {
+                quitQuietly(driver);
+            }
+            return;
+        }
         if (driverPool.get()!=null){
+            openBrowsers.remove(driverPool.get());
             driverPool.get().quit();        //This line will terminate the currently existing driver completely. It will not exist going forward.
             driverPool.remove();            //We assign the value back to "null" so that my "singleton" can create a newer one if needed.
+            PageMetrics.reset();
+        }
+    }
+
+    /*
+    Keeps the browser of the current thread for its next scenario, cleaned like a new one (ResourceLifecycle worker scope).
+    A browser that cannot be cleaned is closed, the next getDriver() opens a new one.
+     */
+    public static void resetDriver(){
+        Prewarm unused = warmingPool.get();
+        if (unused != null){
+            warmingPool.remove();
+            unused.discard();
+        }
+        lastPrewarm.remove();
+        WebDriver driver = driverPool.get();
+        if (driver == null) {
+            return;
+        }
+        PageMetrics.reset();
+        if (!resetBrowser(driver)) {
+            quitQuietly(driver);
+            driverPool.remove();
+        }
+    }
+
+    /*
+    A browser being created on the "warmer" thread, with the timing needed for the report
+     */
+    private static class Prewarm {
+
+        private final Future<WebDriver> future;
+        private volatile long startupMillis;
+        private long waitedMillis;
+
+        Prewarm(Callable<WebDriver> create){
+            future = warmer.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    return create.call();
+                } finally {
+                    startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                }
+            });
+        }
+
+        WebDriver handOver(){
+            long start = System.nanoTime();
+            try {
+                WebDriver driver = future.get();
+                waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                hiddenStartupMillis.addAndGet(startupMillis - waitedMillis);
+                lastPrewarm.set(this);
+                return driver;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the pre-warmed browser", e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                        : new IllegalStateException("Pre-warmed browser could not be started", e.getCause());
+            }
+        }
+
+        void discard(){
+            try {
+                WebDriver driver = future.get();
+                openBrowsers.remove(driver);
+                driver.quit();
+            } catch (Exception e) {
+                log.warn("PRE-WARMED BROWSER COULD NOT BE CLOSED {}", e.getMessage());
+            }
         }
     }
 
-}
\ No newline at end of file
+}
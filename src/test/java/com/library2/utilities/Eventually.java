@@ -0,0 +1,116 @@
+package com.library2.utilities;
+
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Repeats a probe (DB query, UI read...) until it returns the expected state, instead of a fixed sleep.
+ * <p>
+ * The delay between attempts grows exponentially with equal jitter, and it returns as soon as the
+ * condition is true. How long every check needed to converge is recorded per description, so the
+ * report also shows the write-visibility latency of the backend.
+ * <p>
+ * configuration.properties (or -D from terminal):
+ * eventually.timeout.ms         deadline of one check, default 10000
+ * eventually.initial.delay.ms   delay after the first failed attempt, default 100
+ * eventually.max.delay.ms       max delay between attempts, default 2000
+ */
+public class Eventually {
+
+    private static final Logger log = Log.get(Eventually.class);
+
+    private Eventually() {
+    }
+
+    private static final long TIMEOUT_MILLIS = Long.parseLong(ConfigurationReader.getProperty("eventually.timeout.ms", "10000"));
+    private static final long INITIAL_DELAY_MILLIS = Long.parseLong(ConfigurationReader.getProperty("eventually.initial.delay.ms", "100"));
+    private static final long MAX_DELAY_MILLIS = Long.parseLong(ConfigurationReader.getProperty("eventually.max.delay.ms", "2000"));
+
+    // description -> how long it took to converge
+    private static final Map<String, LatencyStats> convergence = new ConcurrentSkipListMap<>();
+
+    /**
+     * Same as {@link #until(String, Supplier, Predicate, Duration)} with the configured timeout
+     */
+    public static <T> T until(String description, Supplier<T> probe, Predicate<T> condition) {
+        return until(description, probe, condition, Duration.ofMillis(TIMEOUT_MILLIS));
+    }
+
+    /**
+     * Calls the probe until the condition is true for its result, or the timeout is over.
+     * Exceptions thrown by the probe (element not found, stale element...) count as "not yet".
+     *
+     * @param description what we are waiting for, used in the report and error message
+     * @param probe       reads the current state
+     * @param condition   expected state
+     * @param timeout     deadline
+     * @return the first result that satisfies the condition
+     * @throws AssertionError if the condition is still false when the timeout is over
+     */
+    public static <T> T until(String description, Supplier<T> probe, Predicate<T> condition, Duration timeout) {
+
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        long delay = INITIAL_DELAY_MILLIS;
+        int attempts = 0;
+        T lastValue = null;
+        RuntimeException lastError = null;
+
+        while (true) {
+            attempts++;
+            try {
+                lastValue = probe.get();
+                lastError = null;
+                if (condition.test(lastValue)) {
+                    long millis = (System.nanoTime() - start) / 1_000_000;
+                    convergence.computeIfAbsent(description, d -> new LatencyStats()).add(millis);
+                    log.info("\"{}\" converged after {} ms, attempts: {}", description, millis, attempts);
+                    return lastValue;
+                }
+            } catch (RuntimeException e) {
+                lastError = e;
+            }
+
+            long remaining = (deadline - System.nanoTime()) / 1_000_000;
+            if (remaining <= 0) {
+                break;
+            }
+            // equal jitter: a random sleep between delay/2 and delay, so parallel scenarios do not poll in lock step
+            long sleep = Math.min(remaining, delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+            try {
+                Thread.sleep(sleep);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            delay = Math.min(delay * 2, MAX_DELAY_MILLIS);
+        }
+
+        throw new AssertionError("\"" + description + "\" did not happen in " + timeout.toMillis() + " ms, attempts: " + attempts
+                + (lastError != null ? ", last error: " + lastError : ", last value: " + lastValue), lastError);
+    }
+
+    /**
+     * @return convergence time statistics of every check, one line per description
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        convergence.forEach((description, stats) ->
+                report.append(String.format("%-40s %s%n", description, stats.summary("ms"))));
+        return report.toString();
+    }
+
+    /**
+     * Forgets the convergence times, e.g. between TestDaemon runs
+     */
+    public static void clearReport() {
+        convergence.clear();
+    }
+
+}
@@ -0,0 +1,419 @@
+package com.library2.utilities;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Data rows from large .xlsx files, for scenarios that run the same request for every row of a sheet.
+ * <p>
+ * The sheet is read with POI's event (SAX) reader: only the current row is in memory, never the sheet,
+ * so a sheet with hundreds of thousands of rows needs the same memory as one with ten.
+ * The first row is the header, every next row is given as header -> formatted cell value ("" for empty cells).
+ * <p>
+ * {@link #feed} hands the rows to parallel workers through a bounded queue: the reader only reads ahead
+ * as far as the queue is long, so rows are read when a worker is ready for them.
+ * Every row's outcome is written to a result .xlsx with the streaming writer (SXSSF), which keeps
+ * only a window of rows in memory and flushes the rest to a temporary file.
+ * <p>
+ * configuration.properties (or -D from terminal):
+ * excel.data.dir      folder of the data files, default src/test/resources/data
+ * excel.workers       parallel workers, default 4
+ * excel.queue.size    rows read ahead of the workers, default 1000
+ * excel.results.dir   folder of the result files, default target/excel-results
+ */
+public class ExcelDataFeeder {
+
+    private ExcelDataFeeder() {
+    }
+
+    private static final int WORKERS = Integer.parseInt(ConfigurationReader.getProperty("excel.workers", "4"));
+    private static final int QUEUE_SIZE = Integer.parseInt(ConfigurationReader.getProperty("excel.queue.size", "1000"));
+    private static final int WRITE_WINDOW = 100;
+    private static final int MAX_EXAMPLES = 10;
+
+    // marks the end of the rows for the workers and the writer
+    private static final DataRow END = new DataRow(-1, Map.of());
+
+    /**
+     * What a worker does with one row
+     */
+    @FunctionalInterface
+    public interface RowTask {
+
+        /**
+         * @param row header -> cell value
+         * @return note for the result file, e.g. the created id
+         * @throws Exception or AssertionError when the row failed, its message goes to the result file
+         */
+        String run(Map<String, String> row) throws Exception;
+    }
+
+    /**
+     * @param file name in excel.data.dir, or a path
+     */
+    public static Path dataFile(String file) {
+        Path path = Path.of(file);
+        return Files.exists(path) ? path : Path.of(ConfigurationReader.getProperty("excel.data.dir", "src/test/resources/data"), file);
+    }
+
+    /**
+     * Reads the rows of a sheet one by one on the calling thread
+     *
+     * @param file  .xlsx file
+     * @param sheet sheet name, null for the first sheet
+     * @param rows  called for every data row with header -> value
+     */
+    public static void read(Path file, String sheet, Consumer<DataRow> rows) {
+
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            StylesTable styles = reader.getStylesTable();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            List<String> names = new ArrayList<>();
+            while (sheets.hasNext()) {
+                try (InputStream in = sheets.next()) {
+                    names.add(sheets.getSheetName());
+                    if (sheet == null || sheet.equals(sheets.getSheetName())) {
+                        XMLReader parser = XMLHelper.newXMLReader();
+                        parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings, new RowCollector(rows), new DataFormatter(), false));
+                        parser.parse(new InputSource(in));
+                        return;
+                    }
+                }
+            }
+            throw new IllegalArgumentException("Sheet " + sheet + " not found in " + file + ", sheets: " + names);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + file, e);
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IllegalStateException("Could not read " + file + " as .xlsx", e);
+        }
+    }
+
+    /**
+     * Runs the task for every row of the sheet on excel.workers threads and writes the outcomes to
+     * excel.results.dir/(file name)-(sheet)-results.xlsx
+     *
+     * @return counts, time and the first failures
+     */
+    public static Summary feed(Path file, String sheet, RowTask task) {
+        return feed(file, sheet, WORKERS, task, Path.of(ConfigurationReader.getProperty("excel.results.dir", "target/excel-results"),
+                file.getFileName().toString().replaceFirst("\\.xlsx$", "") + "-" + (sheet == null ? "first" : sheet) + "-results.xlsx"));
+    }
+
+    public static Summary feed(Path file, String sheet, int workers, RowTask task, Path resultFile) {
+
+        long start = System.nanoTime();
+        Summary summary = new Summary(resultFile);
+        BlockingQueue<DataRow> rows = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        BlockingQueue<RowOutcome> outcomes = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        ExecutorService pool = Executors.newFixedThreadPool(workers + 1, runnable -> {
+            Thread thread = new Thread(runnable, "excel-feeder");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Future<?> writer = pool.submit(() -> {
+            writeResults(outcomes, workers, resultFile);
+            return null;
+        });
+        try {
+            List<Future<?>> consumers = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                consumers.add(pool.submit(() -> {
+                    work(rows, outcomes, task, summary, writer);
+                    return null;
+                }));
+            }
+
+            // reading runs here, put() waits while the workers are behind
+            try {
+                read(file, sheet, row -> put(rows, row, writer));
+            } finally {
+                for (int i = 0; i < workers; i++) {
+                    offerEnd(rows, END, writer);
+                }
+            }
+            for (Future<?> consumer : consumers) {
+                consumer.get();
+            }
+            writer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while feeding " + file, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Feeding " + file + " failed", writerFailure(writer, e.getCause()));
+        } catch (WriterStopped e) {
+            throw new IllegalStateException("Feeding " + file + " failed", writerFailure(writer, e));
+        } finally {
+            pool.shutdownNow();
+        }
+        summary.millis = (System.nanoTime() - start) / 1_000_000;
+        return summary;
+    }
+
+    /*
+    One worker: takes rows until END, never stops on a failed row
+     */
+    private static void work(BlockingQueue<DataRow> rows, BlockingQueue<RowOutcome> outcomes, RowTask task, Summary summary, Future<?> writer) {
+        try {
+            DataRow row;
+            while ((row = rows.take()) != END) {
+                long begin = System.nanoTime();
+                String note;
+                boolean passed;
+                try {
+                    note = task.run(row.values());
+                    passed = true;
+                } catch (Exception | AssertionError e) {
+                    note = e.getMessage() == null ? e.toString() : e.getMessage();
+                    passed = false;
+                }
+                long millis = (System.nanoTime() - begin) / 1_000_000;
+                summary.add(row.number(), passed, note);
+                put(outcomes, new RowOutcome(row, passed, millis, note), writer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while feeding Excel rows", e);
+        } finally {
+            offerEnd(outcomes, RowOutcome.END, writer);
+        }
+    }
+
+    /*
+    Single writer, SXSSF is not thread safe. Columns: row, status, ms, note, then the row's own columns.
+     */
+    private static void writeResults(BlockingQueue<RowOutcome> outcomes, int workers, Path resultFile) throws InterruptedException, IOException {
+
+        SXSSFWorkbook workbook = new SXSSFWorkbook(WRITE_WINDOW);
+        try {
+            SXSSFSheet sheet = workbook.createSheet("results");
+            List<String> headers = null;
+            int rowIndex = 0;
+            int finished = 0;
+            while (finished < workers) {
+                RowOutcome outcome = outcomes.take();
+                if (outcome == RowOutcome.END) {
+                    finished++;
+                    continue;
+                }
+                if (headers == null) {
+                    headers = new ArrayList<>(outcome.row().values().keySet());
+                    Row header = sheet.createRow(rowIndex++);
+                    List<String> titles = new ArrayList<>(List.of("row", "status", "ms", "note"));
+                    titles.addAll(headers);
+                    for (int col = 0; col < titles.size(); col++) {
+                        header.createCell(col).setCellValue(titles.get(col));
+                    }
+                }
+                Row result = sheet.createRow(rowIndex++);
+                result.createCell(0).setCellValue(outcome.row().number());
+                result.createCell(1).setCellValue(outcome.passed() ? "PASSED" : "FAILED");
+                result.createCell(2).setCellValue(outcome.millis());
+                result.createCell(3).setCellValue(outcome.note() == null ? "" : outcome.note());
+                for (int col = 0; col < headers.size(); col++) {
+                    result.createCell(col + 4).setCellValue(outcome.row().values().getOrDefault(headers.get(col), ""));
+                }
+            }
+            Files.createDirectories(resultFile.toAbsolutePath().getParent());
+            try (OutputStream out = Files.newOutputStream(resultFile)) {
+                workbook.write(out);
+            }
+        } finally {
+            workbook.close();   // also deletes the temporary files
+        }
+    }
+
+    /*
+    put() that gives up when the writer has stopped: the writer only ends early when it failed, and then nobody
+    drains the outcomes, so the workers and the reader behind them would wait forever
+     */
+    private static <T> void put(BlockingQueue<T> queue, T element, Future<?> writer) {
+        try {
+            while (!queue.offer(element, 100, TimeUnit.MILLISECONDS)) {
+                if (writer.isDone()) {
+                    throw new WriterStopped();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing Excel rows", e);
+        }
+    }
+
+    /*
+    End marker for the workers or the writer, skipped when the writer has stopped (see put)
+     */
+    private static <T> void offerEnd(BlockingQueue<T> queue, T end, Future<?> writer) {
+        try {
+            put(queue, end, writer);
+        } catch (WriterStopped e) {
+            // the real failure is reported from the writer's future
+        }
+    }
+
+    /*
+    The writer's exception if it failed, it explains why the reader and workers stopped
+     */
+    private static Throwable writerFailure(Future<?> writer, Throwable otherwise) {
+        if (writer.isDone()) {
+            try {
+                writer.get();
+            } catch (ExecutionException e) {
+                return e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (CancellationException e) {
+                // not failed, cancelled by shutdownNow
+            }
+        }
+        return otherwise;
+    }
+
+    private static class WriterStopped extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        WriterStopped() {
+            super("Result writer stopped", null, false, false);
+        }
+    }
+
+    /**
+     * One data row
+     *
+     * @param number row number in the sheet, 1 based like Excel shows it
+     * @param values header -> formatted cell value
+     */
+    public record DataRow(int number, Map<String, String> values) {
+    }
+
+    private record RowOutcome(DataRow row, boolean passed, long millis, String note) {
+        static final RowOutcome END = new RowOutcome(ExcelDataFeeder.END, true, 0, null);
+    }
+
+    /*
+    SAX callbacks of one sheet -> DataRow, the first row gives the column names
+     */
+    private static class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final Consumer<DataRow> rows;
+        private final Map<Integer, String> headers = new LinkedHashMap<>();
+        private Map<Integer, String> cells;
+        private boolean headerRow = true;
+
+        RowCollector(Consumer<DataRow> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells = new LinkedHashMap<>();
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            cells.put((int) new CellReference(cellReference).getCol(), formattedValue);
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (headerRow) {
+                cells.forEach((col, name) -> headers.put(col, name.trim()));
+                headerRow = false;
+                return;
+            }
+            if (cells.isEmpty()) {
+                return;     // blank row
+            }
+            // empty cells have no callback, every header gets a value
+            Map<String, String> values = new LinkedHashMap<>();
+            headers.forEach((col, name) -> values.put(name, cells.getOrDefault(col, "")));
+            rows.accept(new DataRow(rowNum + 1, Collections.unmodifiableMap(values)));
+        }
+    }
+
+    /**
+     * Outcome of one feed
+     */
+    public static class Summary {
+
+        private final Path resultFile;
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final List<String> examples = Collections.synchronizedList(new ArrayList<>());
+        private long millis;
+
+        Summary(Path resultFile) {
+            this.resultFile = resultFile;
+        }
+
+        private void add(int rowNumber, boolean passed, String note) {
+            rows.incrementAndGet();
+            if (!passed) {
+                failed.incrementAndGet();
+                if (examples.size() < MAX_EXAMPLES) {
+                    examples.add("row " + rowNumber + ": " + note);
+                }
+            }
+        }
+
+        public long getRows() {
+            return rows.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(String.format("%d rows in %d ms (%.0f rows/s), failed: %d, results: %s%n",
+                    rows.get(), millis, millis == 0 ? 0.0 : rows.get() * 1000.0 / millis, failed.get(), resultFile));
+            examples.forEach(example -> text.append("  ").append(example).append(System.lineSeparator()));
+            if (failed.get() > examples.size()) {
+                text.append("  ... ").append(failed.get() - examples.size()).append(" more").append(System.lineSeparator());
+            }
+            return text.toString();
+        }
+    }
+
+}
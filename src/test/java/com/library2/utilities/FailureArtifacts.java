@@ -0,0 +1,177 @@
+package com.library2.utilities;
+
+import io.cucumber.java.Scenario;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.logging.LogEntry;
+import org.openqa.selenium.logging.LogType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Captures screenshot, page source and browser console logs when a UI scenario fails.
+ * <p>
+ * Only the capture itself happens on the scenario thread. Compressing and writing to disk is done
+ * by a background writer, and the report gets a file reference instead of the raw bytes.
+ * Bytes waiting to be written are limited by a global memory budget; when the budget is full the
+ * artifact is written on the calling thread, so the heap never holds more than the budget.
+ * <p>
+ * configuration.properties (or -D from terminal):
+ * artifacts.dir                 folder for the artifacts, default target/artifacts
+ * artifacts.memory.budget.mb    max bytes waiting in memory for the writer, default 64
+ * artifacts.writer.threads      background writer threads, default 2
+ */
+public class FailureArtifacts {
+
+    private static final Logger log = Log.get(FailureArtifacts.class);
+
+    private FailureArtifacts() {
+    }
+
+    private static final Path ROOT = Paths.get(ConfigurationReader.getProperty("artifacts.dir", "target/artifacts"));
+    private static final long MEMORY_BUDGET = Long.parseLong(ConfigurationReader.getProperty("artifacts.memory.budget.mb", "64")) * 1024 * 1024;
+    private static final int WRITER_THREADS = Integer.parseInt(ConfigurationReader.getProperty("artifacts.writer.threads", "2"));
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_SSS");
+
+    private static final AtomicLong bytesInFlight = new AtomicLong();
+    private static final AtomicInteger pendingWrites = new AtomicInteger();
+
+    private static final ExecutorService writer = new ThreadPoolExecutor(WRITER_THREADS, WRITER_THREADS,
+            30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "failure-artifact-writer");
+        thread.setDaemon(true);                 // never keep the JVM alive because of a pending artifact
+        return thread;
+    });
+
+    static {
+        ((ThreadPoolExecutor) writer).allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Captures all artifacts of the failed scenario from the given driver and attaches their file references.
+     *
+     * @param scenario failed scenario
+     * @param driver   driver of the scenario, must still be open
+     */
+    public static void capture(Scenario scenario, WebDriver driver) {
+
+        Path folder = ROOT.resolve(folderName(scenario));
+
+        try {
+            byte[] screenshot = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
+            // PNG is already compressed, gzip would only cost CPU
+            store(scenario, folder.resolve("screenshot.png"), screenshot, false, "image/png", "screenshot");
+        } catch (WebDriverException e) {
+            log.warn("COULD NOT TAKE SCREENSHOT {}", e.getMessage());
+        }
+
+        try {
+            byte[] pageSource = driver.getPageSource().getBytes(StandardCharsets.UTF_8);
+            store(scenario, folder.resolve("page-source.html.gz"), pageSource, true, "text/html", "page source");
+        } catch (WebDriverException e) {
+            log.warn("COULD NOT READ PAGE SOURCE {}", e.getMessage());
+        }
+
+        try {
+            StringBuilder console = new StringBuilder();
+            for (LogEntry entry : driver.manage().logs().get(LogType.BROWSER)) {
+                console.append(entry).append(System.lineSeparator());
+            }
+            store(scenario, folder.resolve("console.log.gz"), console.toString().getBytes(StandardCharsets.UTF_8), true, "text/plain", "console log");
+        } catch (WebDriverException | UnsupportedOperationException e) {
+            // not every browser exposes the console log (e.g. firefox)
+            log.warn("COULD NOT READ BROWSER CONSOLE LOG {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Waits until all artifacts handed to the background writer are on disk.
+     *
+     * @param timeoutSeconds max time to wait
+     */
+    public static void awaitPendingWrites(int timeoutSeconds) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        while (pendingWrites.get() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (pendingWrites.get() > 0) {
+            log.warn("FAILURE ARTIFACTS STILL PENDING AFTER {} SECONDS: {}", timeoutSeconds, pendingWrites.get());
+        }
+    }
+
+    private static void store(Scenario scenario, Path file, byte[] content, boolean gzip, String mediaType, String name) {
+
+        // the file name is known upfront, so the report can reference it before it is written
+        scenario.attach(file.toAbsolutePath().toUri() + System.lineSeparator(), "text/uri-list", name + " (" + mediaType + ")");
+
+        if (reserve(content.length)) {
+            pendingWrites.incrementAndGet();
+            writer.execute(() -> {
+                try {
+                    write(file, content, gzip);
+                } finally {
+                    bytesInFlight.addAndGet(-content.length);
+                    pendingWrites.decrementAndGet();
+                }
+            });
+        } else {
+            // budget is full: write it now instead of piling more bytes onto the heap
+            write(file, content, gzip);
+        }
+    }
+
+    private static boolean reserve(long bytes) {
+        while (true) {
+            long current = bytesInFlight.get();
+            if (current + bytes > MEMORY_BUDGET) {
+                return false;
+            }
+            if (bytesInFlight.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    private static void write(Path file, byte[] content, boolean gzip) {
+        try {
+            Files.createDirectories(file.getParent());
+            try (OutputStream out = gzip ? new GZIPOutputStream(Files.newOutputStream(file)) : Files.newOutputStream(file)) {
+                out.write(content);
+            }
+        } catch (IOException e) {
+            log.error("ERROR OCCURRED WHILE WRITING ARTIFACT {} {}", file, e.getMessage());
+        }
+    }
+
+    private static String folderName(Scenario scenario) {
+        String name = scenario.getName().replaceAll("[^A-Za-z0-9]+", "_");
+        if (name.length() > 60) {
+            name = name.substring(0, 60);
+        }
+        return name + "_" + Integer.toHexString(scenario.getId().hashCode()) + "_" + LocalDateTime.now().format(TIMESTAMP);
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.library2.utilities;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the objects of a top level JSON array one by one with Jackson's streaming parser.
+ * <p>
+ * Only the current object is in memory, so the size of the array does not matter.
+ * Every field value is returned as String; nested objects/arrays are returned as their JSON text.
+ */
+public class JsonArrayStream implements Iterator<Map<String, String>>, AutoCloseable {
+
+    private static final Logger log = Log.get(JsonArrayStream.class);
+
+    // factory of an ObjectMapper, so nested values can be read as trees
+    private static final JsonFactory factory = new ObjectMapper().getFactory();
+
+    private final JsonParser parser;
+    private Map<String, String> next;
+
+    public JsonArrayStream(InputStream in) {
+        try {
+            parser = factory.createParser(in);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("JSON body is not an array, it starts with " + parser.currentToken());
+            }
+            next = readNext();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read JSON array", e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Map<String, String> next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        Map<String, String> current = next;
+        try {
+            next = readNext();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read JSON array", e);
+        }
+        return current;
+    }
+
+    @Override
+    public void close() {
+        try {
+            parser.close();
+        } catch (IOException e) {
+            log.error("ERROR OCCURRED WHILE CLOSING JSON PARSER {}", e.getMessage());
+        }
+    }
+
+    private Map<String, String> readNext() throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY || token == null) {
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("Array element is not an object: " + token);
+        }
+        Map<String, String> element = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                element.put(field, parser.readValueAsTree().toString());
+            } else {
+                element.put(field, value == JsonToken.VALUE_NULL ? null : parser.getText());
+            }
+        }
+        return element;
+    }
+
+}
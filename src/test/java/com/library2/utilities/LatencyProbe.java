@@ -0,0 +1,173 @@
+package com.library2.utilities;
+
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.http.Header;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Splits the latency of one HTTP request into DNS lookup, TCP connect, TLS handshake,
+ * time to first byte and transfer time.
+ * <p>
+ * RestAssured only reports the total time, so the probe resends the last captured request
+ * over a plain socket and measures every phase itself. Add the {@link Capture} filter to a
+ * RequestSpecification to remember what was sent.
+ */
+public class LatencyProbe {
+
+    private LatencyProbe() {
+    }
+
+    private static final int TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * RestAssured filter that remembers the last request sent through the specification
+     */
+    public static class Capture implements Filter {
+
+        private volatile Request last;
+
+        @Override
+        public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec, FilterContext ctx) {
+
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (Header header : requestSpec.getHeaders()) {
+                headers.put(header.getName(), header.getValue());
+            }
+
+            byte[] body = new byte[0];
+            if (!requestSpec.getFormParams().isEmpty()) {
+                body = requestSpec.getFormParams().entrySet().stream()
+                        .map(e -> URLEncoder.encode(e.getKey(), StandardCharsets.UTF_8) + "=" + URLEncoder.encode(String.valueOf(e.getValue()), StandardCharsets.UTF_8))
+                        .collect(Collectors.joining("&")).getBytes(StandardCharsets.UTF_8);
+            } else if (requestSpec.getBody() != null) {
+                Object content = requestSpec.getBody();
+                body = content instanceof byte[] ? (byte[]) content : content.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            if (body.length > 0 && requestSpec.getContentType() != null) {
+                headers.put("Content-Type", requestSpec.getContentType());
+            }
+
+            last = new Request(requestSpec.getMethod(), URI.create(requestSpec.getURI()), headers, body);
+            return ctx.next(requestSpec, responseSpec);
+        }
+
+        /**
+         * @return last request sent, null if nothing was sent yet
+         */
+        public Request last() {
+            return last;
+        }
+    }
+
+    /**
+     * Everything needed to send the same request again
+     */
+    public record Request(String method, URI uri, Map<String, String> headers, byte[] body) {
+
+        @Override
+        public String toString() {
+            return method + " " + uri.getPath();
+        }
+    }
+
+    /**
+     * Durations of one request in milliseconds
+     */
+    public record Breakdown(double dns, double connect, double tls, double ttfb, double transfer) {
+
+        public double total() {
+            return dns + connect + tls + ttfb + transfer;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("dns=%.0f connect=%.0f tls=%.0f ttfb=%.0f transfer=%.0f total=%.0f ms", dns, connect, tls, ttfb, transfer, total());
+        }
+    }
+
+    /**
+     * Sends the request once more and measures every phase of it
+     *
+     * @param request request to send
+     * @return durations of each phase
+     * @throws IOException if the server can not be reached
+     */
+    public static Breakdown probe(Request request) throws IOException {
+
+        URI uri = request.uri();
+        boolean https = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() != -1 ? uri.getPort() : https ? 443 : 80;
+
+        long start = System.nanoTime();
+        InetAddress address = InetAddress.getByName(uri.getHost());
+        long resolved = System.nanoTime();
+
+        try (Socket plain = new Socket()) {
+            plain.connect(new InetSocketAddress(address, port), TIMEOUT_MILLIS);
+            plain.setSoTimeout(TIMEOUT_MILLIS);
+            long connected = System.nanoTime();
+
+            Socket socket = plain;
+            if (https) {
+                SSLSocket ssl = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(plain, uri.getHost(), port, true);
+                ssl.startHandshake();
+                socket = ssl;
+            }
+            long handshaken = System.nanoTime();
+
+            OutputStream out = socket.getOutputStream();
+            out.write(requestHead(request, port, https).getBytes(StandardCharsets.ISO_8859_1));
+            out.write(request.body());
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[8192];
+            in.read(buffer, 0, 1);
+            long firstByte = System.nanoTime();
+            while (in.read(buffer) != -1) {
+                // drain the response, "Connection: close" makes the server end the stream
+            }
+            long done = System.nanoTime();
+
+            return new Breakdown(millis(start, resolved), millis(resolved, connected), millis(connected, handshaken),
+                    millis(handshaken, firstByte), millis(firstByte, done));
+        }
+    }
+
+    private static String requestHead(Request request, int port, boolean https) {
+        URI uri = request.uri();
+        String target = uri.getRawPath() + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "");
+        boolean defaultPort = port == (https ? 443 : 80);
+
+        StringBuilder head = new StringBuilder();
+        head.append(request.method()).append(' ').append(target).append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(uri.getHost()).append(defaultPort ? "" : ":" + port).append("\r\n");
+        request.headers().forEach((name, value) -> head.append(name).append(": ").append(value).append("\r\n"));
+        head.append("Content-Length: ").append(request.body().length).append("\r\n");
+        head.append("Connection: close\r\n\r\n");
+        return head.toString();
+    }
+
+    private static double millis(long fromNanos, long toNanos) {
+        return (toNanos - fromNanos) / 1_000_000.0;
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.library2.utilities;
+
+import java.util.Arrays;
+
+/**
+ * Collects latency samples (in milliseconds) and calculates percentiles from them.
+ * Other measurements (sizes, counts) work as well, their unit is given to summary(String).
+ * Methods are synchronized, so one instance can be shared between threads.
+ */
+public class LatencyStats {
+
+    private double[] samples = new double[16];
+    private int count;
+
+    public synchronized void add(double millis) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = millis;
+    }
+
+    /**
+     * Drops all samples
+     */
+    public synchronized void clear() {
+        samples = new double[16];
+        count = 0;
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    /**
+     * Nearest-rank percentile
+     *
+     * @param percentile between 0 and 100, e.g. 95 for p95
+     * @return value of the percentile, 0 if there are no samples
+     */
+    public synchronized double percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        double[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return sorted[Math.min(Math.max(rank, 1), count) - 1];
+    }
+
+    public synchronized double min() {
+        return count == 0 ? 0 : Arrays.stream(samples, 0, count).min().getAsDouble();
+    }
+
+    public synchronized double max() {
+        return count == 0 ? 0 : Arrays.stream(samples, 0, count).max().getAsDouble();
+    }
+
+    public synchronized double mean() {
+        return count == 0 ? 0 : Arrays.stream(samples, 0, count).sum() / count;
+    }
+
+    /**
+     * @return copy of the samples in the order they were added
+     */
+    public synchronized double[] samples() {
+        return Arrays.copyOf(samples, count);
+    }
+
+    /**
+     * @param unit unit of the samples, e.g. "ms", "B", "requests"
+     * @return one line summary like "count=20 min=101 p50=120 p90=180 p95=200 max=230 ms"
+     */
+    public synchronized String summary(String unit) {
+        return String.format("count=%d min=%.0f p50=%.0f p90=%.0f p95=%.0f p99=%.0f max=%.0f %s",
+                count, min(), percentile(50), percentile(90), percentile(95), percentile(99), max(), unit);
+    }
+
+}
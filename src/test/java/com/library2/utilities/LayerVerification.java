@@ -0,0 +1,141 @@
+package com.library2.utilities;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the checks of independent layers (API, DB, UI) at the same time and reports all mismatches together.
+ * <p>
+ * Every layer is a probe returning its list of mismatches. Background layers run on worker threads;
+ * the UI layer runs on the calling thread because the browser belongs to that thread (see Driver).
+ * The step takes as long as the slowest layer instead of the sum of all layers.
+ * <p>
+ * Example:
+ * <pre>
+ * new LayerVerification("created book")
+ *         .layer("DB", () -> LayerVerification.compare(expected, dbRow))
+ *         .callerLayer("UI", () -> LayerVerification.compare(expected, uiRow))
+ *         .verify();
+ * </pre>
+ */
+public class LayerVerification {
+
+    private static final Logger log = Log.get(LayerVerification.class);
+
+    private static final ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "layer-verification");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String subject;
+    private final Map<String, Callable<List<String>>> backgroundLayers = new LinkedHashMap<>();
+    private final Map<String, Callable<List<String>>> callerLayers = new LinkedHashMap<>();
+
+    /**
+     * @param subject what is verified, used in the failure message, e.g. "created book"
+     */
+    public LayerVerification(String subject) {
+        this.subject = subject;
+    }
+
+    /**
+     * Adds a layer that runs on a worker thread. It must not use the browser.
+     */
+    public LayerVerification layer(String name, Callable<List<String>> probe) {
+        backgroundLayers.put(name, probe);
+        return this;
+    }
+
+    /**
+     * Adds a layer that runs on the calling thread, for probes that use Driver.getDriver()
+     */
+    public LayerVerification callerLayer(String name, Callable<List<String>> probe) {
+        callerLayers.put(name, probe);
+        return this;
+    }
+
+    /**
+     * Runs all layers concurrently and fails once with the mismatches of every layer
+     */
+    public void verify() {
+
+        long start = System.nanoTime();
+        Map<String, Future<Result>> running = new LinkedHashMap<>();
+        backgroundLayers.forEach((name, probe) -> running.put(name, workers.submit(() -> run(probe))));
+
+        Map<String, Result> results = new LinkedHashMap<>();
+        callerLayers.forEach((name, probe) -> results.put(name, run(probe)));
+
+        for (Map.Entry<String, Future<Result>> layer : running.entrySet()) {
+            try {
+                results.put(layer.getKey(), layer.getValue().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.put(layer.getKey(), new Result(List.of("interrupted while waiting for the layer"), 0));
+            } catch (ExecutionException e) {
+                results.put(layer.getKey(), new Result(List.of("layer failed: " + e.getCause()), 0));
+            }
+        }
+        long totalMillis = (System.nanoTime() - start) / 1_000_000;
+
+        StringBuilder timing = new StringBuilder();
+        StringBuilder mismatches = new StringBuilder();
+        results.forEach((name, result) -> {
+            timing.append(name).append('=').append(result.millis).append(" ms ");
+            result.mismatches.forEach(mismatch -> mismatches.append(System.lineSeparator()).append("  [").append(name).append("] ").append(mismatch));
+        });
+        log.info("Verification of {}: {}total={} ms", subject, timing, totalMillis);
+
+        if (mismatches.length() > 0) {
+            Assert.fail("Layers do not match for " + subject + ":" + mismatches);
+        }
+    }
+
+    /**
+     * Compares expected values with actual values of the same keys
+     *
+     * @param expected expected values, e.g. the random request body
+     * @param actual   actual values, e.g. a DB row
+     * @param fields   fields to compare, all keys of expected if none is given
+     * @return one line per different field, empty if all equal
+     */
+    public static List<String> compare(Map<String, ?> expected, Map<String, String> actual, String... fields) {
+        List<String> mismatches = new ArrayList<>();
+        Iterable<String> keys = fields.length > 0 ? List.of(fields) : expected.keySet();
+        for (String key : keys) {
+            String expectedValue = expected.get(key) == null ? null : expected.get(key).toString();
+            String actualValue = actual.get(key);
+            if (!Objects.equals(expectedValue, actualValue)) {
+                mismatches.add(key + ": expected '" + expectedValue + "' but was '" + actualValue + "'");
+            }
+        }
+        return mismatches;
+    }
+
+    private static Result run(Callable<List<String>> probe) {
+        long start = System.nanoTime();
+        List<String> mismatches;
+        try {
+            mismatches = probe.call();
+        } catch (Throwable e) {         // AssertionError of Eventually included
+            mismatches = List.of(e.toString());
+        }
+        return new Result(mismatches, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private record Result(List<String> mismatches, long millis) {
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.library2.utilities;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.restassured.RestAssured;
+import org.openqa.selenium.WebDriver;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The resources of a Library2 run and their scopes, managed by {@link ResourceLifecycle}:
+ * <ul>
+ * <li>config (suite, eager): configuration.properties and the base URI</li>
+ * <li>http (suite, eager): first request to the API, loads the HTTP stack and resolves the host before the first scenario</li>
+ * <li>tokens (suite): login token per role, fetched once and again only when it expires</li>
+ * <li>db (suite): the DB_Utils connection, kept open for the run and checked before every scenario</li>
+ * <li>db-session (scenario): statement and result set of a @db scenario, closed after it</li>
+ * <li>browser (worker or scenario, lifecycle.browser.scope): the browser of a scenario thread</li>
+ * </ul>
+ * configuration.properties (or -D from terminal):
+ * lifecycle.browser.scope   worker: a thread keeps its browser between scenarios (cleaned after each),
+ *                           scenario: new browser for every scenario; default worker
+ * lifecycle.warmup.http     send the http warm-up request, default true
+ */
+public class LibraryResources {
+
+    private LibraryResources() {
+    }
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    public static final ResourceLifecycle.Resource<String> CONFIG = ResourceLifecycle
+            .register("config", ResourceLifecycle.Scope.SUITE, () -> ConfigurationReader.getProperty("library.baseUri"));
+
+    public static final ResourceLifecycle.Resource<String> HTTP = ResourceLifecycle
+            .register("http", ResourceLifecycle.Scope.SUITE, CONFIG::get)
+            .warmUp(baseUri -> {
+                if (!Boolean.parseBoolean(ConfigurationReader.getProperty("lifecycle.warmup.http", "true"))
+                        || "replay".equalsIgnoreCase(ConfigurationReader.getProperty("api.mode", "live"))) {
+                    return;     // a replayed run does not use the network
+                }
+                // any answer is fine, only the connection and the class loading matter; not recorded
+                RestAssured.given().baseUri(baseUri).filters(AsyncHttpEngine.filters()).get("/");
+            });
+
+    private static final ResourceLifecycle.Resource<Map<String, Token>> TOKENS = ResourceLifecycle
+            .<Map<String, Token>>register("tokens", ResourceLifecycle.Scope.SUITE, ConcurrentHashMap::new)
+            .onClose(Map::clear);
+
+    public static final ResourceLifecycle.Resource<Connection> DB = ResourceLifecycle
+            .register("db", ResourceLifecycle.Scope.SUITE, () -> {
+                DB_Utils.keepConnection(true);
+                DB_Utils.createConnection();
+                return DB_Utils.getConnection();
+            })
+            .healthCheck(connection -> connection == DB_Utils.getConnection() && DB_Utils.isConnectionValid())
+            .onClose(connection -> {
+                if (connection == DB_Utils.getConnection()) {
+                    DB_Utils.keepConnection(false);     // otherwise it was already replaced (TestDaemon) and closed
+                }
+            });
+
+    public static final ResourceLifecycle.Resource<Connection> DB_SESSION = ResourceLifecycle
+            .register("db-session", ResourceLifecycle.Scope.SCENARIO, DB::get)
+            .onClose(connection -> DB_Utils.destroy());
+
+    private static final boolean WORKER_BROWSERS = "worker".equalsIgnoreCase(ConfigurationReader.getProperty("lifecycle.browser.scope", "worker"));
+
+    public static final ResourceLifecycle.Resource<WebDriver> BROWSER = ResourceLifecycle
+            .register("browser", WORKER_BROWSERS ? ResourceLifecycle.Scope.WORKER : ResourceLifecycle.Scope.SCENARIO, Driver::getDriver)
+            .healthCheck(LibraryResources::isCurrentAndResponding)
+            .onScenarioEnd(driver -> Driver.resetDriver())
+            .onClose(LibraryResources::closeBrowser);
+
+    /**
+     * Creates and warms up the eager suite resources, see ResourceLifecycle.startSuite
+     */
+    public static void startSuite() {
+        ResourceLifecycle.startSuite(CONFIG, HTTP);
+    }
+
+    /**
+     * @param role librarian or student
+     * @return login token of the role, from the cache while it is valid for at least one more minute
+     */
+    public static String token(String role) {
+        Instant soon = Instant.now().plusSeconds(60);
+        Token token = TOKENS.get().compute(role, (key, cached) ->
+                cached != null && cached.expires().isAfter(soon) ? cached : Token.of(LibraryUtils.generateTokenByRole(role)));
+        return token.value();
+    }
+
+    /*
+    The resource may hold a browser that the thread no longer uses (e.g. closed by TestDaemon between runs)
+     */
+    private static boolean isCurrentAndResponding(WebDriver driver) {
+        if (!Driver.isStarted() || Driver.getDriver() != driver) {
+            return false;
+        }
+        driver.getWindowHandle();       // throws if the browser or its session is gone
+        return true;
+    }
+
+    /*
+    Scenario scope closes on the scenario thread, worker browsers are quit at shutdown from another thread
+     */
+    private static void closeBrowser(WebDriver driver) {
+        if (Driver.isStarted() && Driver.getDriver() == driver) {
+            Driver.closeDriver();
+            return;
+        }
+        Driver.quit(driver);
+    }
+
+    /*
+    Token with its expiry from the JWT exp claim, never expiring if it is not a JWT
+     */
+    private record Token(String value, Instant expires) {
+
+        static Token of(String value) {
+            try {
+                String[] parts = value.split("\\.");
+                JsonNode claims = mapper.readTree(new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8));
+                if (claims.hasNonNull("exp")) {
+                    return new Token(value, Instant.ofEpochSecond(claims.get("exp").asLong()));
+                }
+            } catch (Exception e) {
+                // not a JWT, the token is used for the whole run
+            }
+            return new Token(value, Instant.MAX);
+        }
+    }
+
+}
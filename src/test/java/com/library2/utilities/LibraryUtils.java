@@ -1,9 +1,8 @@
 package com.library2.utilities;
 
 import com.github.javafaker.Faker;
-import io.restassured.RestAssured;
-import io.restassured.http.ContentType;
 import io.restassured.path.json.JsonPath;
+import org.apache.logging.log4j.Logger;
 
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -11,11 +10,12 @@ import java.util.Map;
 
 public class LibraryUtils {
 
+    private static final Logger log = Log.get(LibraryUtils.class);
+
     public static String getToken(String email, String password) {
 
-        JsonPath jp = RestAssured.given().log().uri()
-                .accept(ContentType.JSON)
-                .contentType(ContentType.URLENC)
+        long start = System.nanoTime();
+        JsonPath jp = RequestSpecs.given(RequestSpecs.Family.WRITE)
                 .formParam("email", email)
                 .formParam("password", password)
                 .when().post("/login")
@@ -24,6 +24,8 @@ public class LibraryUtils {
                 .extract().jsonPath();
 
         String accessToken = jp.getString("token");
+        MetricsRegistry.LOGIN.observeNanos(System.nanoTime() - start);
+        Log.timed(log, (System.nanoTime() - start) / 1_000_000, "Logged in to Library API as {}", email);
 
         return accessToken;
 
@@ -101,7 +103,7 @@ public class LibraryUtils {
         // fake user data
         String fullName = "Mahh" + faker.name().fullName();
         String email = fullName.substring(0, fullName.indexOf(" ")) + faker.number().numberBetween(0,10) + "@library";
-        System.out.println("email = " + email);
+        log.debug("email = {}", email);
 
         userMap.put("full_name", fullName);
         userMap.put("email", email);
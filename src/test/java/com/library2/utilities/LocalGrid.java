@@ -0,0 +1,261 @@
+package com.library2.utilities;
+
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small Selenium grid on this machine: N chromedriver nodes, each with a fixed number of browser slots.
+ * Browser "local-grid" in configuration.properties (or -Dbrowser=local-grid) makes Driver use it.
+ * <p>
+ * A scenario that needs a browser waits in a fair queue until a slot is free, then gets a headless
+ * RemoteWebDriver on the least busy healthy node. quit() gives the slot back. A supervisor thread
+ * restarts nodes whose chromedriver process died. {@link #report()} shows per-node utilization,
+ * which is used to pick grid.nodes / grid.slots.per.node for the machine.
+ * <p>
+ * configuration.properties (or -D from terminal):
+ * grid.nodes                number of nodes, "auto" = limited by CPU cores and free memory, default auto
+ * grid.slots.per.node       browsers per node at the same time, default 1
+ * grid.browser.memory.mb    memory one headless browser needs, used by "auto", default 512
+ * grid.queue.timeout.s      max wait for a free slot, default 300
+ */
+public class LocalGrid {
+
+    private static final Logger log = Log.get(LocalGrid.class);
+
+    private static final int SLOTS_PER_NODE = Integer.parseInt(ConfigurationReader.getProperty("grid.slots.per.node", "1"));
+    private static final long BROWSER_MEMORY_MB = Long.parseLong(ConfigurationReader.getProperty("grid.browser.memory.mb", "512"));
+    private static final long QUEUE_TIMEOUT_SECONDS = Long.parseLong(ConfigurationReader.getProperty("grid.queue.timeout.s", "300"));
+
+    private static volatile LocalGrid instance;
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final Semaphore freeSlots;
+    private final long startNanos = System.nanoTime();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LatencyStats queueWaitMillis = new LatencyStats();
+    private final ScheduledExecutorService supervisor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "local-grid-supervisor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private LocalGrid(int nodeCount) {
+        for (int i = 1; i <= nodeCount; i++) {
+            nodes.add(new Node(i));
+        }
+        freeSlots = new Semaphore(nodeCount * SLOTS_PER_NODE, true);      // fair: first waiting scenario gets the first free slot
+        supervisor.scheduleWithFixedDelay(this::superviseNodes, 5, 5, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "local-grid-shutdown"));
+        log.info("Local grid started: {} nodes x {} slots", nodeCount, SLOTS_PER_NODE);
+    }
+
+    /**
+     * @return the grid of this JVM, nodes are started on first use
+     */
+    public static LocalGrid getInstance() {
+        if (instance == null) {
+            synchronized (LocalGrid.class) {
+                if (instance == null) {
+                    instance = new LocalGrid(nodeCount());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @return true if the grid was used in this JVM
+     */
+    public static boolean isStarted() {
+        return instance != null;
+    }
+
+    /*
+    grid.nodes, or as many nodes as both the cores and the free memory allow
+     */
+    private static int nodeCount() {
+        String configured = ConfigurationReader.getProperty("grid.nodes", "auto");
+        if (!configured.equalsIgnoreCase("auto")) {
+            return Math.max(1, Integer.parseInt(configured));
+        }
+        int byCores = Runtime.getRuntime().availableProcessors();
+        long freeMemoryMb = ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getFreeMemorySize() / (1024 * 1024);
+        int byMemory = (int) (freeMemoryMb / (BROWSER_MEMORY_MB * SLOTS_PER_NODE));
+        return Math.max(1, Math.min(byCores, byMemory));
+    }
+
+    /**
+     * Waits for a free slot and starts a browser session on the least busy node
+     *
+     * @param capabilities browser options, headless is added by the caller
+     * @return browser session, its quit() frees the slot
+     */
+    public RemoteWebDriver newSession(Capabilities capabilities) {
+
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        try {
+            if (!freeSlots.tryAcquire(QUEUE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("No free browser slot in the local grid after " + QUEUE_TIMEOUT_SECONDS + " s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a browser slot", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        queueWaitMillis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        Node node = leastBusyNode();
+        try {
+            node.ensureRunning();
+            return new GridDriver(node, capabilities);
+        } catch (RuntimeException e) {
+            node.release(0);
+            throw e;
+        }
+    }
+
+    /*
+    A free slot exists (semaphore), so at least one node has active < SLOTS_PER_NODE
+     */
+    private synchronized Node leastBusyNode() {
+        Node node = nodes.stream()
+                .filter(n -> n.active < SLOTS_PER_NODE)
+                .min(Comparator.comparingInt((Node n) -> n.active).thenComparingLong(n -> n.busyNanos))
+                .orElseThrow(() -> new IllegalStateException("Local grid has no free slot although the queue let us in"));
+        node.active++;
+        node.sessions++;
+        node.peakActive = Math.max(node.peakActive, node.active);
+        return node;
+    }
+
+    private void superviseNodes() {
+        for (Node node : nodes) {
+            try {
+                node.ensureRunning();
+            } catch (RuntimeException e) {
+                log.error("LOCAL GRID NODE {} COULD NOT BE RESTARTED {}", node.id, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return per node: sessions, peak parallel sessions, utilization (busy slot time / available slot time), restarts
+     */
+    public String report() {
+        double wallNanos = System.nanoTime() - startNanos;
+        StringBuilder report = new StringBuilder(String.format("Local grid: %d nodes x %d slots, cores: %d, waiting now: %d, queue wait: %s%n",
+                nodes.size(), SLOTS_PER_NODE, Runtime.getRuntime().availableProcessors(), waiting.get(), queueWaitMillis.summary("ms")));
+        synchronized (this) {
+            for (Node node : nodes) {
+                report.append(String.format("  node %d  sessions: %4d  peak: %d/%d  utilization: %5.1f%%  restarts: %d%n",
+                        node.id, node.sessions, node.peakActive, SLOTS_PER_NODE,
+                        100.0 * node.busyNanos / (wallNanos * SLOTS_PER_NODE), node.restarts));
+            }
+        }
+        return report.toString();
+    }
+
+    private void stop() {
+        supervisor.shutdownNow();
+        nodes.forEach(Node::stop);
+    }
+
+    /**
+     * One chromedriver process with SLOTS_PER_NODE browser slots
+     */
+    private class Node {
+
+        private final int id;
+        private ChromeDriverService service;
+        private int active;
+        private int peakActive;
+        private int sessions;
+        private int restarts;
+        private long busyNanos;
+
+        Node(int id) {
+            this.id = id;
+        }
+
+        synchronized void ensureRunning() {
+            if (service != null && service.isRunning()) {
+                return;
+            }
+            if (service != null) {
+                restarts++;
+                log.warn("LOCAL GRID NODE {} WAS NOT RUNNING, RESTARTING IT", id);
+                service.stop();
+            }
+            service = ChromeDriverService.createDefaultService();
+            try {
+                service.start();
+            } catch (IOException e) {
+                throw new IllegalStateException("Local grid node " + id + " could not be started", e);
+            }
+        }
+
+        synchronized URL url() {
+            return service.getUrl();
+        }
+
+        void release(long busy) {
+            synchronized (LocalGrid.this) {
+                active--;
+                busyNanos += busy;
+            }
+            freeSlots.release();
+        }
+
+        synchronized void stop() {
+            if (service != null) {
+                service.stop();
+            }
+        }
+    }
+
+    /**
+     * Browser session on a node, quit() gives the slot back exactly once
+     */
+    private static class GridDriver extends RemoteWebDriver {
+
+        private final Node node;
+        private final long startNanos = System.nanoTime();
+        private boolean released;
+
+        GridDriver(Node node, Capabilities capabilities) {
+            super(node.url(), capabilities);
+            this.node = node;
+        }
+
+        @Override
+        public void quit() {
+            try {
+                super.quit();
+            } finally {
+                synchronized (this) {
+                    if (!released) {
+                        released = true;
+                        node.release(System.nanoTime() - startNanos);
+                    }
+                }
+            }
+        }
+    }
+
+}
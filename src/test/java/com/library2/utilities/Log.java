@@ -0,0 +1,143 @@
+package com.library2.utilities;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+import org.apache.logging.log4j.core.Appender;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.appender.AsyncAppender;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Framework logger: log4j2 with asynchronous appenders (src/test/resources/log4j2.xml).
+ * <p>
+ * A log call only puts the event in a queue, a background thread formats and writes it,
+ * so steps and parallel scenarios do not wait for console or file I/O and their lines do not interleave.
+ * Every event carries the ThreadContext fields of its thread: scenarioId, scenario and step are set by
+ * {@link LogContext} (Cucumber plugin), latencyMs by {@link #timed}. The console shows the scenario id,
+ * target/logs/library2.json has all fields as one JSON object per line, e.g. to filter one scenario of a parallel run.
+ * <p>
+ * log4j's own shutdown hook is off (log4j2.xml). The hook of this class stops logging at JVM exit, in every JVM that
+ * logs, after the tasks registered with {@link #beforeShutdown}, so messages of closing resources are still written.
+ * <p>
+ * configuration.properties (or -D from terminal):
+ * log.level    level of the com.library2 loggers, default info (debug also logs the full HTTP requests)
+ */
+public class Log {
+
+    private Log() {
+    }
+
+    private static final List<Runnable> beforeShutdown = new CopyOnWriteArrayList<>();
+
+    static {
+        Configurator.setLevel("com.library2", Level.toLevel(ConfigurationReader.getProperty("log.level", "info"), Level.INFO));
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::shutdown, "log-shutdown"));
+    }
+
+    /**
+     * Runs the task at JVM exit while logging still works, e.g. closing resources (ResourceLifecycle)
+     */
+    public static void beforeShutdown(Runnable task) {
+        beforeShutdown.add(task);
+    }
+
+    private static void shutdown() {
+        for (Runnable task : beforeShutdown) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.out.println("ERROR OCCURRED WHILE SHUTTING DOWN " + e);
+            }
+        }
+        LogManager.shutdown();      // flushes the async appenders and the JSON file
+    }
+
+    /**
+     * Waits until the async appenders wrote the queued events, e.g. before System.out is switched back
+     * (the console appender follows System.out)
+     *
+     * @param maxMillis longest wait
+     */
+    public static void awaitQueued(long maxMillis) {
+        long deadline = System.nanoTime() + maxMillis * 1_000_000;
+        for (Appender appender : LoggerContext.getContext(false).getConfiguration().getAppenders().values()) {
+            if (appender instanceof AsyncAppender async) {
+                while (async.getQueueRemainingCapacity() < async.getQueueCapacity() && System.nanoTime() < deadline) {
+                    LockSupport.parkNanos(1_000_000);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return logger of the class, with the level of log.level
+     */
+    public static Logger get(Class<?> type) {
+        return LogManager.getLogger(type);
+    }
+
+    /**
+     * Logs the message with latencyMs as a structured field
+     */
+    public static void timed(Logger logger, long latencyMillis, String message, Object... params) {
+        ThreadContext.put("latencyMs", String.valueOf(latencyMillis));
+        try {
+            logger.info(message, params);
+        } finally {
+            ThreadContext.remove("latencyMs");
+        }
+    }
+
+    /**
+     * Stream that logs every line written to it, for libraries that print to a PrintStream (RestAssured request logging).
+     * Lines are cut on the writing thread, so its ThreadContext fields are kept.
+     */
+    public static PrintStream printStream(Logger logger, Level level) {
+        return new PrintStream(new LineLogger(logger, level), true, StandardCharsets.UTF_8);
+    }
+
+    private static class LineLogger extends OutputStream {
+
+        private final Logger logger;
+        private final Level level;
+        private final ThreadLocal<ByteArrayOutputStream> line = ThreadLocal.withInitial(ByteArrayOutputStream::new);
+
+        LineLogger(Logger logger, Level level) {
+            this.logger = logger;
+            this.level = level;
+        }
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                flushLine();
+            } else if (b != '\r') {
+                line.get().write(b);
+            }
+        }
+
+        @Override
+        public void flush() {
+            flushLine();
+        }
+
+        private void flushLine() {
+            ByteArrayOutputStream buffer = line.get();
+            if (buffer.size() > 0) {
+                logger.log(level, buffer.toString(StandardCharsets.UTF_8));
+                buffer.reset();
+            }
+        }
+    }
+
+}
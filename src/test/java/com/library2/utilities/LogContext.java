@@ -0,0 +1,66 @@
+package com.library2.utilities;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.Status;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestStepFinished;
+import io.cucumber.plugin.event.TestStepStarted;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+
+/**
+ * Cucumber plugin that puts the running scenario and step into the log4j ThreadContext, so every log line of
+ * hooks, steps and utilities can be traced back to its scenario, also when scenarios run in parallel.
+ * <p>
+ * It is a ConcurrentEventListener: events arrive on the thread that runs the scenario, the same thread the
+ * step code logs from. Scenario ends (info), failed steps (warn) and all steps (debug) are logged with their duration as latencyMs.
+ * <p>
+ * Registered in the runners: plugin = "com.library2.utilities.LogContext"
+ */
+public class LogContext implements ConcurrentEventListener {
+
+    private static final Logger log = Log.get(LogContext.class);
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestCaseStarted.class, this::scenarioStarted);
+        publisher.registerHandlerFor(TestStepStarted.class, this::stepStarted);
+        publisher.registerHandlerFor(TestStepFinished.class, this::stepFinished);
+        publisher.registerHandlerFor(TestCaseFinished.class, this::scenarioFinished);
+    }
+
+    private void scenarioStarted(TestCaseStarted event) {
+        ThreadContext.put("scenarioId", event.getTestCase().getId().toString().substring(0, 8));
+        ThreadContext.put("scenario", event.getTestCase().getName());
+        log.info("Scenario started: {} ({}:{})", event.getTestCase().getName(), event.getTestCase().getUri(), event.getTestCase().getLocation().getLine());
+    }
+
+    private void stepStarted(TestStepStarted event) {
+        if (event.getTestStep() instanceof PickleStepTestStep step) {
+            ThreadContext.put("step", step.getStep().getKeyword() + step.getStep().getText());
+        }
+    }
+
+    private void stepFinished(TestStepFinished event) {
+        if (event.getTestStep() instanceof PickleStepTestStep step) {
+            Status status = event.getResult().getStatus();
+            ThreadContext.put("latencyMs", String.valueOf(event.getResult().getDuration().toMillis()));
+            if (status == Status.FAILED) {
+                log.warn("Step {}: {}", status, step.getStep().getText(), event.getResult().getError());
+            } else {
+                log.debug("Step {}: {}", status, step.getStep().getText());
+            }
+            ThreadContext.remove("latencyMs");
+            ThreadContext.remove("step");
+        }
+    }
+
+    private void scenarioFinished(TestCaseFinished event) {
+        Log.timed(log, event.getResult().getDuration().toMillis(), "Scenario {}: {}", event.getResult().getStatus(), event.getTestCase().getName());
+        ThreadContext.clearMap();
+    }
+
+}
@@ -0,0 +1,286 @@
+package com.library2.utilities;
+
+import com.sun.net.httpserver.HttpServer;
+import io.restassured.filter.FilterContext;
+import io.restassured.filter.OrderedFilter;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Run-level counters and latency histograms, exported in OpenMetrics text format.
+ * <p>
+ * The file is written at the end of the run (Hooks), so a scheduled run can be scraped or uploaded
+ * by the monitoring. With metrics.port the same text is also served on http://localhost:{port}/metrics
+ * while the JVM runs (e.g. TestDaemon or a soak run).
+ * <p>
+ * Metrics of the framework:
+ * library2_login_duration_seconds            LibraryUtils.getToken
+ * library2_http_request_duration_seconds     every API request, by method, endpoint template and status
+ * library2_db_query_duration_seconds         DB_Utils.runQuery
+ * library2_browser_start_duration_seconds    browser start in Driver, by browser
+ * library2_scenarios_total                   finished scenarios, by status
+ * <p>
+ * configuration.properties (or -D from terminal):
+ * metrics.file   default target/metrics/library2.om
+ * metrics.port   local port for /metrics, 0 = off, default 0
+ */
+public class MetricsRegistry {
+
+    private static final Logger log = Log.get(MetricsRegistry.class);
+
+    private MetricsRegistry() {
+    }
+
+    // seconds, from fast API calls to slow browser starts
+    private static final double[] LATENCY_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+
+    private static final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+    public static final Histogram LOGIN = histogram("library2_login_duration_seconds", "Time of LibraryUtils.getToken");
+    public static final Histogram HTTP_REQUEST = histogram("library2_http_request_duration_seconds", "Library2 API request time", "method", "endpoint", "status");
+    public static final Histogram DB_QUERY = histogram("library2_db_query_duration_seconds", "Time of DB_Utils.runQuery");
+    public static final Histogram BROWSER_START = histogram("library2_browser_start_duration_seconds", "Time to start a browser in Driver", "browser");
+    public static final Counter SCENARIOS = counter("library2_scenarios", "Finished scenarios", "status");
+
+    private static HttpServer server;
+
+    /**
+     * @return the counter with this name, created on first call
+     */
+    public static Counter counter(String name, String help, String... labelNames) {
+        return (Counter) metrics.computeIfAbsent(name, n -> new Counter(n, help, labelNames));
+    }
+
+    /**
+     * @return the latency histogram (seconds) with this name, created on first call
+     */
+    public static Histogram histogram(String name, String help, String... labelNames) {
+        return (Histogram) metrics.computeIfAbsent(name, n -> new Histogram(n, help, labelNames));
+    }
+
+    /**
+     * Filter that records the time of every API request in library2_http_request_duration_seconds.
+     * The endpoint label is the path as written in the step (e.g. /get_user_by_id/{id}), so ids do not create new series.
+     */
+    public static OrderedFilter httpFilter() {
+        return HTTP_FILTER;
+    }
+
+    private static final OrderedFilter HTTP_FILTER = new OrderedFilter() {
+        @Override
+        public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec, FilterContext ctx) {
+            long start = System.nanoTime();
+            Response response = ctx.next(requestSpec, responseSpec);
+            HTTP_REQUEST.observeNanos(System.nanoTime() - start, requestSpec.getMethod(), requestSpec.getUserDefinedPath(), String.valueOf(response.getStatusCode()));
+            return response;
+        }
+
+        @Override
+        public int getOrder() {
+            return LOWEST_PRECEDENCE - 2;       // around record/replay and the HTTP engine, after logging
+        }
+    };
+
+    /**
+     * @return all metrics in OpenMetrics text format
+     */
+    public static String scrape() {
+        StringBuilder text = new StringBuilder();
+        metrics.values().forEach(metric -> metric.write(text));
+        return text.append("# EOF\n").toString();
+    }
+
+    /**
+     * Writes all metrics to metrics.file
+     */
+    public static void writeFile() {
+        Path file = Path.of(ConfigurationReader.getProperty("metrics.file", "target/metrics/library2.om"));
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.writeString(file, scrape());
+            log.info("Metrics written to {}", file);
+        } catch (IOException e) {
+            log.error("ERROR OCCURRED WHILE WRITING METRICS {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Serves /metrics on localhost:metrics.port if it is set, only once per JVM
+     */
+    public static synchronized void startServer() {
+        int port = Integer.parseInt(ConfigurationReader.getProperty("metrics.port", "0"));
+        if (port == 0 || server != null) {
+            return;
+        }
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/openmetrics-text; version=1.0.0; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            log.info("Metrics served on http://localhost:{}/metrics", port);
+        } catch (IOException e) {
+            log.error("ERROR OCCURRED WHILE STARTING METRICS SERVER {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the /metrics server, its dispatcher thread would keep a plain java process alive
+     */
+    public static synchronized void stopServer() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    /**
+     * Observations of a histogram series: count and sum in seconds
+     */
+    public record Totals(long count, double seconds) {
+    }
+
+    private abstract static class Metric {
+
+        final String name;
+        final String help;
+        final String[] labelNames;
+
+        Metric(String name, String help, String[] labelNames) {
+            this.name = name;
+            this.help = help;
+            this.labelNames = labelNames;
+        }
+
+        abstract void write(StringBuilder text);
+
+        /*
+        {method="GET",endpoint="/get_all_users"} with an optional extra label such as le
+         */
+        String labels(List<String> values, String extraName, String extraValue) {
+            StringBuilder labels = new StringBuilder();
+            for (int i = 0; i < labelNames.length; i++) {
+                labels.append(labels.length() == 0 ? "{" : ",").append(labelNames[i]).append("=\"").append(escape(values.get(i))).append('"');
+            }
+            if (extraName != null) {
+                labels.append(labels.length() == 0 ? "{" : ",").append(extraName).append("=\"").append(extraValue).append('"');
+            }
+            return labels.length() == 0 ? "" : labels.append('}').toString();
+        }
+
+        List<String> key(String[] labelValues) {
+            if (labelValues.length != labelNames.length) {
+                throw new IllegalArgumentException(name + " needs labels " + Arrays.toString(labelNames));
+            }
+            return List.of(labelValues);
+        }
+
+        private static String escape(String value) {
+            return value == null ? "" : value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+    }
+
+    public static class Counter extends Metric {
+
+        private final Map<List<String>, LongAdder> values = new ConcurrentHashMap<>();
+
+        Counter(String name, String help, String[] labelNames) {
+            super(name, help, labelNames);
+        }
+
+        public void inc(String... labelValues) {
+            values.computeIfAbsent(key(labelValues), k -> new LongAdder()).increment();
+        }
+
+        @Override
+        void write(StringBuilder text) {
+            text.append("# TYPE ").append(name).append(" counter\n");
+            text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            values.forEach((labelValues, value) ->
+                    text.append(name).append("_total").append(labels(labelValues, null, null)).append(' ').append(value.sum()).append('\n'));
+        }
+    }
+
+    public static class Histogram extends Metric {
+
+        private final Map<List<String>, Series> series = new ConcurrentHashMap<>();
+
+        Histogram(String name, String help, String[] labelNames) {
+            super(name, help, labelNames);
+        }
+
+        public void observeNanos(long nanos, String... labelValues) {
+            double seconds = nanos / 1e9;
+            Series s = series.computeIfAbsent(key(labelValues), k -> new Series());
+            for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                if (seconds <= LATENCY_BUCKETS[i]) {
+                    s.buckets[i].increment();
+                    break;      // buckets are cumulated when written
+                }
+            }
+            s.count.increment();
+            s.sum.add(seconds);
+        }
+
+        /**
+         * @return count and sum of every label combination so far, the difference of two calls is the latency of the interval
+         */
+        public Map<List<String>, Totals> totals() {
+            Map<List<String>, Totals> totals = new HashMap<>();
+            series.forEach((labelValues, s) -> totals.put(labelValues, new Totals(s.count.sum(), s.sum.sum())));
+            return totals;
+        }
+
+        @Override
+        void write(StringBuilder text) {
+            text.append("# TYPE ").append(name).append(" histogram\n");
+            text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            series.forEach((labelValues, s) -> {
+                long cumulative = 0;
+                for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                    cumulative += s.buckets[i].sum();
+                    text.append(name).append("_bucket").append(labels(labelValues, "le", String.valueOf(LATENCY_BUCKETS[i]))).append(' ').append(cumulative).append('\n');
+                }
+                text.append(name).append("_bucket").append(labels(labelValues, "le", "+Inf")).append(' ').append(s.count.sum()).append('\n');
+                text.append(name).append("_count").append(labels(labelValues, null, null)).append(' ').append(s.count.sum()).append('\n');
+                text.append(name).append("_sum").append(labels(labelValues, null, null)).append(' ').append(s.sum.sum()).append('\n');
+            });
+        }
+
+        private static class Series {
+            final LongAdder[] buckets = new LongAdder[LATENCY_BUCKETS.length];
+            final LongAdder count = new LongAdder();
+            final DoubleAdder sum = new DoubleAdder();
+
+            Series() {
+                for (int i = 0; i < buckets.length; i++) {
+                    buckets[i] = new LongAdder();
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+package com.library2.utilities;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chromium.ChromiumDriver;
+import org.openqa.selenium.logging.LogEntry;
+import org.openqa.selenium.logging.LogType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Reads Navigation Timing, Resource Timing and paint metrics from the browser after UI steps,
+ * and on Chromium browsers also the network events of the DevTools performance log.
+ * <p>
+ * Every call returns only what happened since the previous call on the same thread,
+ * and adds the numbers to a per page aggregation that is written at the end of the run.
+ * <p>
+ * configuration.properties (or -D from terminal):
+ * page.metrics.enabled    collect metrics after each UI step, default true
+ * page.metrics.report     aggregated report file, default target/performance/page-metrics.txt
+ */
+public class PageMetrics {
+
+    private static final Logger log = Log.get(PageMetrics.class);
+
+    private PageMetrics() {
+    }
+
+    public static final boolean ENABLED = Boolean.parseBoolean(ConfigurationReader.getProperty("page.metrics.enabled", "true"));
+    private static final Path REPORT = Paths.get(ConfigurationReader.getProperty("page.metrics.report", "target/performance/page-metrics.txt"));
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    /*
+    One script execution reads everything we need from the Performance API.
+    arguments[0] is the number of resource entries we have already seen in this document.
+     */
+    private static final String SCRIPT = String.join("\n",
+            "var nav = performance.getEntriesByType('navigation')[0];",
+            "var res = performance.getEntriesByType('resource');",
+            "var out = {timeOrigin: performance.timeOrigin, page: location.pathname + location.hash, resourceCount: res.length, paint: {}};",
+            "if (nav) {",
+            "  out.navigation = {dns: nav.domainLookupEnd - nav.domainLookupStart, connect: nav.connectEnd - nav.connectStart,",
+            "    ttfb: nav.responseStart - nav.requestStart, domContentLoaded: nav.domContentLoadedEventEnd, load: nav.loadEventEnd,",
+            "    transferSize: nav.transferSize};",
+            "}",
+            "performance.getEntriesByType('paint').forEach(function (p) { out.paint[p.name] = p.startTime; });",
+            "out.resources = res.slice(arguments[0]).map(function (r) {",
+            "  return {name: r.name, type: r.initiatorType, duration: r.duration, size: r.transferSize};",
+            "});",
+            "return out;");
+
+    // page -> metric name -> samples
+    private static final Map<String, Map<String, LatencyStats>> pages = new ConcurrentSkipListMap<>();
+
+    // per thread: which document we saw last and how many of its resources were already reported
+    private static final ThreadLocal<Double> lastTimeOrigin = new ThreadLocal<>();
+    private static final ThreadLocal<Long> seenResources = ThreadLocal.withInitial(() -> 0L);
+
+    /**
+     * Collects the metrics of the current page of the given driver
+     *
+     * @param driver driver of the current scenario
+     * @return readable summary of what was collected since the previous call, empty if nothing new
+     */
+    public static String collect(WebDriver driver) {
+
+        StringBuilder summary = new StringBuilder();
+
+        try {
+            Map<?, ?> data = (Map<?, ?>) ((JavascriptExecutor) driver).executeScript(SCRIPT, seenResources.get());
+
+            String page = String.valueOf(data.get("page"));
+            double timeOrigin = number(data.get("timeOrigin"));
+
+            // a new timeOrigin means a full page load happened since the previous step
+            if (lastTimeOrigin.get() == null || lastTimeOrigin.get() != timeOrigin) {
+                lastTimeOrigin.set(timeOrigin);
+                seenResources.set(0L);
+
+                Map<?, ?> navigation = (Map<?, ?>) data.get("navigation");
+                if (navigation != null) {
+                    summary.append("navigation ").append(page).append(System.lineSeparator());
+                    for (Map.Entry<?, ?> entry : navigation.entrySet()) {
+                        record(page, "navigation." + entry.getKey(), number(entry.getValue()));
+                        summary.append(String.format("  %-18s %.0f%n", entry.getKey(), number(entry.getValue())));
+                    }
+                }
+                Map<?, ?> paint = (Map<?, ?>) data.get("paint");
+                for (Map.Entry<?, ?> entry : paint.entrySet()) {
+                    record(page, "paint." + entry.getKey(), number(entry.getValue()));
+                    summary.append(String.format("  %-18s %.0f%n", entry.getKey(), number(entry.getValue())));
+                }
+            }
+
+            List<Map<?, ?>> resources = new ArrayList<>();
+            for (Object resource : (List<?>) data.get("resources")) {
+                resources.add((Map<?, ?>) resource);
+            }
+            seenResources.set((long) number(data.get("resourceCount")));
+            if (!resources.isEmpty()) {
+                resources.sort(Comparator.comparingDouble(r -> -number(r.get("duration"))));
+                summary.append("resources ").append(page).append(": ").append(resources.size()).append(" new").append(System.lineSeparator());
+                for (Map<?, ?> resource : resources) {
+                    record(page, "resource." + resource.get("type"), number(resource.get("duration")));
+                }
+                // the slowest ones are the interesting ones
+                for (Map<?, ?> resource : resources.subList(0, Math.min(5, resources.size()))) {
+                    summary.append(String.format("  %6.0f ms %8.0f B  %s%n", number(resource.get("duration")), number(resource.get("size")), resource.get("name")));
+                }
+            }
+
+            summary.append(devToolsNetwork(driver, page));
+
+        } catch (WebDriverException | ClassCastException e) {
+            log.warn("COULD NOT COLLECT PAGE METRICS {}", e.getMessage());
+        }
+
+        return summary.toString();
+    }
+
+    /**
+     * Forgets the document seen by this thread, call it when the driver of the thread is closed
+     */
+    public static void reset() {
+        lastTimeOrigin.remove();
+        seenResources.remove();
+    }
+
+    /**
+     * Forgets the collected metrics of all pages, e.g. between TestDaemon runs
+     */
+    public static void clearReport() {
+        pages.clear();
+    }
+
+    /**
+     * Writes p50/p90/p95/max of every metric per page into the report file
+     */
+    public static void writeReport() {
+        if (pages.isEmpty()) {
+            return;
+        }
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, Map<String, LatencyStats>> page : pages.entrySet()) {
+            report.append(page.getKey()).append(System.lineSeparator());
+            for (Map.Entry<String, LatencyStats> metric : new TreeMap<>(page.getValue()).entrySet()) {
+                report.append(String.format("  %-32s %s%n", metric.getKey(), metric.getValue().summary(unit(metric.getKey()))));
+            }
+        }
+        try {
+            Files.createDirectories(REPORT.getParent());
+            Files.writeString(REPORT, report);
+            log.info("Page metrics report: {}", REPORT.toAbsolutePath());
+        } catch (IOException e) {
+            log.error("ERROR OCCURRED WHILE WRITING PAGE METRICS {}", e.getMessage());
+        }
+    }
+
+    /*
+    Chromium only: the "performance" log contains DevTools network events since the previous read.
+    Driver enables it with goog:loggingPrefs, other browsers just skip this part.
+     */
+    private static String devToolsNetwork(WebDriver driver, String page) {
+        if (!(driver instanceof ChromiumDriver)) {
+            return "";
+        }
+        int requests = 0;
+        double encodedBytes = 0;
+        try {
+            for (LogEntry entry : driver.manage().logs().get(LogType.PERFORMANCE)) {
+                JsonNode message = mapper.readTree(entry.getMessage()).path("message");
+                switch (message.path("method").asText()) {
+                    case "Network.requestWillBeSent" -> requests++;
+                    case "Network.loadingFinished" -> encodedBytes += message.path("params").path("encodedDataLength").asDouble();
+                }
+            }
+        } catch (WebDriverException | IOException e) {
+            return "";
+        }
+        if (requests == 0) {
+            return "";
+        }
+        record(page, "devtools.requests", requests);
+        record(page, "devtools.encodedKB", encodedBytes / 1024);
+        return String.format("devtools network: %d requests, %.1f KB%n", requests, encodedBytes / 1024);
+    }
+
+    /* Most metrics are times, the sizes and counts are named by what they measure */
+    private static String unit(String metric) {
+        return switch (metric) {
+            case "navigation.transferSize" -> "B";
+            case "devtools.requests" -> "requests";
+            case "devtools.encodedKB" -> "KB";
+            default -> "ms";
+        };
+    }
+
+    private static void record(String page, String metric, double value) {
+        pages.computeIfAbsent(page, p -> new ConcurrentHashMap<>())
+                .computeIfAbsent(metric, m -> new LatencyStats())
+                .add(value);
+    }
+
+    private static double number(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+}
@@ -0,0 +1,236 @@
+package com.library2.utilities;
+
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Times every query of DB_Utils and explains the slow ones.
+ * <p>
+ * Queries are grouped by shape (literals replaced with ?) and every shape is explained once, the first time it runs.
+ * A plan row with type=ALL on one of db.full.scan.tables is flagged as full table scan.
+ * A query slower than db.slow.query.ms is printed with its time, row count and EXPLAIN plan.
+ * {@link #report()} lists the slowest shapes and the full scans of the run.
+ * <p>
+ * configuration.properties (or -D from terminal):
+ * db.slow.query.ms        threshold of a slow query, default 500
+ * db.slow.query.top       shapes in the end-of-run report, default 10
+ * db.full.scan.tables     tables where a full scan is flagged, default books,users
+ * db.slow.query.report    report file, default target/performance/slow-queries.txt
+ */
+public class QueryProfiler {
+
+    private static final Logger log = Log.get(QueryProfiler.class);
+
+    private QueryProfiler() {
+    }
+
+    private static final long SLOW_MILLIS = Long.parseLong(ConfigurationReader.getProperty("db.slow.query.ms", "500"));
+    private static final int TOP = Integer.parseInt(ConfigurationReader.getProperty("db.slow.query.top", "10"));
+    private static final Set<String> FULL_SCAN_TABLES = Arrays.stream(ConfigurationReader.getProperty("db.full.scan.tables", "books,users").split(","))
+            .map(String::trim).map(String::toLowerCase).collect(Collectors.toSet());
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // query shape -> statistics
+    private static final Map<String, Shape> shapes = new ConcurrentHashMap<>();
+
+    /**
+     * Records one executed query, explains it if its shape was not explained yet
+     *
+     * @param con   connection the query ran on, used for EXPLAIN
+     * @param sql   the query
+     * @param nanos execution time
+     * @param rows  returned rows, only called for slow queries (counting can move the cursor), -1 if unknown
+     */
+    public static void record(Connection con, String sql, long nanos, LongSupplier rows) {
+
+        double millis = nanos / 1e6;
+        Shape shape = shapes.computeIfAbsent(shape(sql), Shape::new);
+        if (shape.claimExplain()) {
+            shape.plan = explain(con, sql);
+            shape.fullScans = fullScans(shape.plan);
+            if (!shape.fullScans.isEmpty()) {
+                log.warn("FULL TABLE SCAN ON {}: {}", shape.fullScans, sql);
+            }
+        }
+
+        if (millis < SLOW_MILLIS) {
+            shape.add(sql, millis, 0);
+            return;
+        }
+        long rowCount = rows.getAsLong();
+        shape.add(sql, millis, rowCount);
+        log.warn("SLOW QUERY {} ms, {} rows: {}{}", Math.round(millis), rowCount < 0 ? "?" : rowCount, sql,
+                shape.plan.isEmpty() ? "" : System.lineSeparator() + formatPlan(shape.plan));
+    }
+
+    /**
+     * @return the slowest query shapes of the run (by max time) with count, times, rows and plan, then the full scans;
+     * empty if no query was slow or scanned a whole table
+     */
+    public static String report() {
+        List<Shape> slowest = shapes.values().stream()
+                .filter(shape -> shape.stats.max() >= SLOW_MILLIS)
+                .sorted(Comparator.comparingDouble((Shape shape) -> shape.stats.max()).reversed())
+                .limit(TOP)
+                .collect(Collectors.toList());
+        List<Shape> fullScans = shapes.values().stream().filter(shape -> !shape.fullScans.isEmpty()).collect(Collectors.toList());
+        if (slowest.isEmpty() && fullScans.isEmpty()) {
+            return "";
+        }
+        StringBuilder report = new StringBuilder();
+        if (!fullScans.isEmpty()) {
+            report.append(String.format("Full table scans on %s:%n", FULL_SCAN_TABLES));
+            fullScans.forEach(shape -> report.append(String.format("   %s %s (%d runs)%n", shape.fullScans, shape.text, shape.stats.count())));
+            report.append(System.lineSeparator());
+        }
+        report.append(String.format("Top %d slowest queries (threshold %d ms)%n", slowest.size(), SLOW_MILLIS));
+        int rank = 1;
+        for (Shape shape : slowest) {
+            report.append(String.format("%n%d. %s%n   %s, max rows: %d%n   example: %s%n", rank++, shape.text, shape.stats.summary("ms"), shape.maxRows, shape.slowestSql));
+            if (!shape.plan.isEmpty()) {
+                report.append(formatPlan(shape.plan)).append(System.lineSeparator());
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * Forgets the recorded queries, e.g. between TestDaemon runs
+     */
+    public static void clearReport() {
+        shapes.clear();
+    }
+
+    /**
+     * Prints the report and writes it to db.slow.query.report, nothing if the report is empty
+     */
+    public static void writeReport() {
+        String report = report();
+        if (report.isEmpty()) {
+            return;
+        }
+        log.info("{}", report);
+        Path file = Path.of(ConfigurationReader.getProperty("db.slow.query.report", "target/performance/slow-queries.txt"));
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.writeString(file, report);
+        } catch (IOException e) {
+            log.error("ERROR OCCURRED WHILE WRITING SLOW QUERY REPORT {}", e.getMessage());
+        }
+    }
+
+    /*
+    select * from users where id = 5 and name = 'x'  ->  select * from users where id = ? and name = ?
+     */
+    static String shape(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        return WHITESPACE.matcher(shape.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    /*
+    EXPLAIN rows as column -> value maps, empty for statements MySQL cannot explain or on error
+     */
+    private static List<Map<String, String>> explain(Connection con, String sql) {
+        List<Map<String, String>> plan = new ArrayList<>();
+        String statementType = sql.trim().split("\\s+", 2)[0].toLowerCase(Locale.ROOT);
+        if (con == null || !Set.of("select", "with", "update", "delete", "insert", "replace").contains(statementType)) {
+            return plan;
+        }
+        try (Statement statement = con.createStatement();
+             ResultSet result = statement.executeQuery("EXPLAIN " + sql)) {
+            ResultSetMetaData metaData = result.getMetaData();
+            while (result.next()) {
+                Map<String, String> row = new LinkedHashMap<>();
+                for (int colIndex = 1; colIndex <= metaData.getColumnCount(); colIndex++) {
+                    row.put(metaData.getColumnLabel(colIndex), result.getString(colIndex));
+                }
+                plan.add(row);
+            }
+        } catch (SQLException e) {
+            log.error("ERROR OCCURRED WHILE EXPLAINING QUERY {}", e.getMessage());
+        }
+        return plan;
+    }
+
+    private static List<String> fullScans(List<Map<String, String>> plan) {
+        List<String> tables = new ArrayList<>();
+        for (Map<String, String> row : plan) {
+            String table = row.get("table");
+            if ("ALL".equalsIgnoreCase(row.get("type")) && table != null && FULL_SCAN_TABLES.contains(table.toLowerCase(Locale.ROOT))) {
+                tables.add(table);
+            }
+        }
+        return tables;
+    }
+
+    private static String formatPlan(List<Map<String, String>> plan) {
+        return plan.stream()
+                .map(row -> "   EXPLAIN: table=" + row.get("table") + " type=" + row.get("type") + " key=" + row.get("key")
+                        + " rows=" + row.get("rows") + " extra=" + row.get("Extra"))
+                .collect(Collectors.joining(System.lineSeparator()));
+    }
+
+    /*
+    Statistics of one query shape
+     */
+    private static class Shape {
+
+        final String text;
+        final LatencyStats stats = new LatencyStats();
+        volatile long maxRows;
+        volatile String slowestSql;
+        private double slowestMillis = -1;
+        private boolean explained;
+        volatile List<Map<String, String>> plan = List.of();
+        volatile List<String> fullScans = List.of();
+
+        Shape(String text) {
+            this.text = text;
+        }
+
+        synchronized void add(String sql, double millis, long rows) {
+            stats.add(millis);
+            maxRows = Math.max(maxRows, rows);
+            if (millis > slowestMillis) {
+                slowestMillis = millis;
+                slowestSql = sql;
+            }
+        }
+
+        /*
+        true only for the first caller, so a shape is explained once
+         */
+        synchronized boolean claimExplain() {
+            if (explained) {
+                return false;
+            }
+            explained = true;
+            return true;
+        }
+    }
+
+}
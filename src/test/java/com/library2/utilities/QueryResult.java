@@ -0,0 +1,253 @@
+package com.library2.utilities;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Result of a query read into memory once, stored column by column.
+ * <p>
+ * Every column is one String array, and repeated values (status, dates, group ids...) are stored
+ * only once per result. Column names are looked up from a HashMap, so access by name is O(1).
+ * Rows can still be seen as Map&lt;String,String&gt; with {@link #getRowMap(int)}, those maps are
+ * views over the columns and are created only when asked for.
+ * <p>
+ * Row numbers start from 1 and column indexes start from 1, same as in DB_Utils and JDBC.
+ */
+public class QueryResult {
+
+    private final String[] columnNames;
+    private final Map<String, Integer> columnIndex;
+    private final String[][] columns;
+    private final int rowCount;
+
+    private QueryResult(String[] columnNames, String[][] columns, int rowCount) {
+        this.columnNames = columnNames;
+        this.columns = columns;
+        this.rowCount = rowCount;
+        this.columnIndex = new HashMap<>(columnNames.length * 2);
+        for (int i = 0; i < columnNames.length; i++) {
+            columnIndex.putIfAbsent(columnNames[i], i);
+            columnIndex.putIfAbsent(columnNames[i].toLowerCase(), i);
+        }
+    }
+
+    /**
+     * Reads all the remaining rows of the ResultSet. The ResultSet is not closed.
+     *
+     * @param rs ResultSet, cursor before the first row to read
+     * @return materialized result
+     */
+    public static QueryResult from(ResultSet rs) throws SQLException {
+
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();          // read metadata only once
+        String[] names = new String[columnCount];
+        for (int colIndex = 1; colIndex <= columnCount; colIndex++) {
+            names[colIndex - 1] = metaData.getColumnLabel(colIndex);
+        }
+
+        String[][] columns = new String[columnCount][64];
+        Map<String, String> interned = new HashMap<>();
+        int rows = 0;
+
+        while (rs.next()) {
+            if (columnCount > 0 && rows == columns[0].length) {
+                for (int col = 0; col < columnCount; col++) {
+                    columns[col] = Arrays.copyOf(columns[col], rows * 2);
+                }
+            }
+            for (int col = 0; col < columnCount; col++) {
+                String value = rs.getString(col + 1);
+                if (value != null) {
+                    String existing = interned.putIfAbsent(value, value);
+                    if (existing != null) {
+                        value = existing;
+                    }
+                }
+                columns[col][rows] = value;
+            }
+            rows++;
+        }
+
+        for (int col = 0; col < columnCount; col++) {
+            columns[col] = Arrays.copyOf(columns[col], rows);
+        }
+        return new QueryResult(names, columns, rows);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    public List<String> getColumnNames() {
+        return List.of(columnNames);
+    }
+
+    /**
+     * @param columnName column name or label, case-insensitive
+     * @return column index starting from 1
+     */
+    public int getColumnIndex(String columnName) {
+        Integer index = columnIndex.get(columnName);
+        if (index == null) {
+            index = columnIndex.get(columnName.toLowerCase());
+        }
+        if (index == null) {
+            throw new IllegalArgumentException("No column \"" + columnName + "\" in " + Arrays.toString(columnNames));
+        }
+        return index + 1;
+    }
+
+    public String getString(int rowNum, int columnIndex) {
+        checkRow(rowNum);
+        return columns[columnIndex - 1][rowNum - 1];
+    }
+
+    public String getString(int rowNum, String columnName) {
+        return getString(rowNum, getColumnIndex(columnName));
+    }
+
+    /**
+     * @return cell value as int, 0 if the cell is null (like ResultSet.getInt)
+     */
+    public int getInt(int rowNum, String columnName) {
+        String value = getString(rowNum, columnName);
+        return value == null ? 0 : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * @return cell value as long, 0 if the cell is null (like ResultSet.getLong)
+     */
+    public long getLong(int rowNum, String columnName) {
+        String value = getString(rowNum, columnName);
+        return value == null ? 0 : Long.parseLong(value.trim());
+    }
+
+    /**
+     * @return cell value as double, 0 if the cell is null (like ResultSet.getDouble)
+     */
+    public double getDouble(int rowNum, String columnName) {
+        String value = getString(rowNum, columnName);
+        return value == null ? 0 : Double.parseDouble(value.trim());
+    }
+
+    /**
+     * @return true for "1" and "true" (MySQL tinyint/bit), false otherwise
+     */
+    public boolean getBoolean(int rowNum, String columnName) {
+        String value = getString(rowNum, columnName);
+        return value != null && (value.trim().equals("1") || value.trim().equalsIgnoreCase("true"));
+    }
+
+    /**
+     * @param columnIndex column index starting from 1
+     * @return all values of the column, read-only
+     */
+    public List<String> getColumn(int columnIndex) {
+        return Arrays.asList(columns[columnIndex - 1]).subList(0, rowCount);
+    }
+
+    public List<String> getColumn(String columnName) {
+        return getColumn(getColumnIndex(columnName));
+    }
+
+    /**
+     * @param rowNum row number starting from 1
+     * @return read-only map view of the row, key: column name, value: cell value, in column order
+     */
+    public Map<String, String> getRowMap(int rowNum) {
+        checkRow(rowNum);
+        return new RowMap(rowNum - 1);
+    }
+
+    /**
+     * @return read-only list of map views, one per row. Maps are created while the list is read.
+     */
+    public List<Map<String, String>> asListOfMaps() {
+        return new AbstractList<>() {
+            @Override
+            public Map<String, String> get(int index) {
+                return getRowMap(index + 1);
+            }
+
+            @Override
+            public int size() {
+                return rowCount;
+            }
+        };
+    }
+
+    private void checkRow(int rowNum) {
+        if (rowNum < 1 || rowNum > rowCount) {
+            throw new IndexOutOfBoundsException("Row " + rowNum + " does not exist, row count is " + rowCount);
+        }
+    }
+
+    private class RowMap extends AbstractMap<String, String> {
+
+        private final int row;
+
+        RowMap(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public String get(Object key) {
+            Integer index = key == null ? null : columnIndex.get(key.toString());
+            return index == null ? null : columns[index][row];
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key != null && columnIndex.containsKey(key.toString());
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<>() {
+                        private int col;
+
+                        @Override
+                        public boolean hasNext() {
+                            return col < columnNames.length;
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, String> entry = new SimpleImmutableEntry<>(columnNames[col], columns[col][row]);
+                            col++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return columnNames.length;
+                }
+            };
+        }
+    }
+
+}
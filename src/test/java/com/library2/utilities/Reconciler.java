@@ -0,0 +1,318 @@
+package com.library2.utilities;
+
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares two whole collections of records, e.g. every user of /get_all_users against the users table.
+ * <p>
+ * Both sides are streamed once and hash-partitioned by key into temporary files. Then the partitions
+ * are compared one at a time: the left partition goes into a HashMap, the right partition is streamed
+ * against it. Memory is bounded by one partition and the run time is linear in the number of rows.
+ * <p>
+ * Example:
+ * <pre>
+ * Reconciler.Report report = new Reconciler("API", "DB", List.of("id"))
+ *         .map("name", "full_name")
+ *         .reconcile(apiSource, dbSource);
+ * </pre>
+ */
+public class Reconciler {
+
+    private static final Logger log = Log.get(Reconciler.class);
+
+    /**
+     * One side of the comparison. It is read only once, so it can be a ResultSet or an HTTP body stream.
+     */
+    public interface Source {
+        void forEach(Consumer<Map<String, String>> record);
+    }
+
+    private final String leftName;
+    private final String rightName;
+    private final List<String> keyFields;
+    private final Map<String, String> fieldMapping = new LinkedHashMap<>();  // left field -> right field
+    private int partitions = Integer.parseInt(ConfigurationReader.getProperty("reconcile.partitions", "64"));
+    private int maxExamples = Integer.parseInt(ConfigurationReader.getProperty("reconcile.max.examples", "20"));
+
+    /**
+     * @param leftName  name of the left side in the report, e.g. "API"
+     * @param rightName name of the right side in the report, e.g. "DB"
+     * @param keyFields key fields of the left side, mapped to the right side with {@link #map(String, String)}
+     */
+    public Reconciler(String leftName, String rightName, List<String> keyFields) {
+        this.leftName = leftName;
+        this.rightName = rightName;
+        this.keyFields = List.copyOf(keyFields);
+    }
+
+    /**
+     * Compares left field with right field. If no field is mapped, fields with the same name on both sides are compared.
+     */
+    public Reconciler map(String leftField, String rightField) {
+        fieldMapping.put(leftField, rightField);
+        return this;
+    }
+
+    public Reconciler partitions(int partitions) {
+        this.partitions = partitions;
+        return this;
+    }
+
+    public Reconciler maxExamples(int maxExamples) {
+        this.maxExamples = maxExamples;
+        return this;
+    }
+
+    /**
+     * Streams both sides and compares them
+     *
+     * @param left  left side records
+     * @param right right side records
+     * @return counts and examples of missing, extra and mismatched rows
+     */
+    public Report reconcile(Source left, Source right) {
+
+        Report report = new Report();
+        Path folder = null;
+        try {
+            folder = Files.createTempDirectory("reconcile");
+            Path leftFolder = Files.createDirectories(folder.resolve("left"));
+            Path rightFolder = Files.createDirectories(folder.resolve("right"));
+
+            report.leftRows = partition(left, leftFolder, keyFields);
+            report.rightRows = partition(right, rightFolder, rightKeyFields());
+
+            for (int i = 0; i < partitions; i++) {
+                comparePartition(leftFolder.resolve(String.valueOf(i)), rightFolder.resolve(String.valueOf(i)), report);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Reconciliation could not use temporary files", e);
+        } finally {
+            delete(folder);
+        }
+        return report;
+    }
+
+    private List<String> rightKeyFields() {
+        return keyFields.stream().map(field -> fieldMapping.getOrDefault(field, field)).collect(Collectors.toList());
+    }
+
+    private long partition(Source source, Path folder, List<String> keys) throws IOException {
+
+        DataOutputStream[] outputs = new DataOutputStream[partitions];
+        long[] count = {0};
+        try {
+            for (int i = 0; i < partitions; i++) {
+                outputs[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(folder.resolve(String.valueOf(i))), 16 * 1024));
+            }
+            source.forEach(record -> {
+                String key = keys.stream().map(record::get).map(String::valueOf).collect(Collectors.joining("|"));
+                try {
+                    write(outputs[Math.floorMod(key.hashCode(), partitions)], key, record);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+        } finally {
+            for (DataOutputStream output : outputs) {
+                if (output != null) {
+                    output.close();
+                }
+            }
+        }
+        return count[0];
+    }
+
+    private void comparePartition(Path leftFile, Path rightFile, Report report) throws IOException {
+
+        Map<String, Map<String, String>> leftRecords = new HashMap<>();
+        try (DataInputStream in = open(leftFile)) {
+            Map.Entry<String, Map<String, String>> entry;
+            while ((entry = read(in)) != null) {
+                if (leftRecords.put(entry.getKey(), entry.getValue()) != null) {
+                    report.duplicateKeys++;
+                    report.example(report.duplicateExamples, maxExamples, leftName + " key " + entry.getKey());
+                }
+            }
+        }
+
+        try (DataInputStream in = open(rightFile)) {
+            Map.Entry<String, Map<String, String>> entry;
+            while ((entry = read(in)) != null) {
+                Map<String, String> leftRecord = leftRecords.remove(entry.getKey());
+                if (leftRecord == null) {
+                    report.extra++;
+                    report.example(report.extraExamples, maxExamples, "key " + entry.getKey() + " only in " + rightName);
+                    continue;
+                }
+                List<String> diffs = diff(leftRecord, entry.getValue());
+                if (diffs.isEmpty()) {
+                    report.matched++;
+                } else {
+                    report.mismatched++;
+                    report.example(report.mismatchExamples, maxExamples, "key " + entry.getKey() + ": " + String.join(", ", diffs));
+                }
+            }
+        }
+
+        for (String key : leftRecords.keySet()) {
+            report.missing++;
+            report.example(report.missingExamples, maxExamples, "key " + key + " only in " + leftName);
+        }
+    }
+
+    private List<String> diff(Map<String, String> left, Map<String, String> right) {
+        List<String> diffs = new ArrayList<>();
+        Map<String, String> fields = fieldMapping;
+        if (fields.isEmpty()) {
+            fields = new LinkedHashMap<>();
+            for (String field : left.keySet()) {
+                if (right.containsKey(field)) {
+                    fields.put(field, field);
+                }
+            }
+        }
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            String leftValue = normalize(left.get(field.getKey()));
+            String rightValue = normalize(right.get(field.getValue()));
+            if (!Objects.equals(leftValue, rightValue)) {
+                diffs.add(field.getKey() + " " + leftName + "='" + leftValue + "' " + rightName + "='" + rightValue + "'");
+            }
+        }
+        return diffs;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? null : value.trim();
+    }
+
+    /*
+    record format in the partition files: key, field count, then name / null flag / value for every field
+     */
+    private static void write(DataOutputStream out, String key, Map<String, String> record) throws IOException {
+        out.writeUTF(key);
+        out.writeInt(record.size());
+        for (Map.Entry<String, String> field : record.entrySet()) {
+            out.writeUTF(field.getKey());
+            out.writeBoolean(field.getValue() != null);
+            if (field.getValue() != null) {
+                out.writeUTF(field.getValue());
+            }
+        }
+    }
+
+    private static Map.Entry<String, Map<String, String>> read(DataInputStream in) throws IOException {
+        String key;
+        try {
+            key = in.readUTF();
+        } catch (EOFException e) {
+            return null;
+        }
+        int size = in.readInt();
+        Map<String, String> record = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String name = in.readUTF();
+            record.put(name, in.readBoolean() ? in.readUTF() : null);
+        }
+        return Map.entry(key, record);
+    }
+
+    private static DataInputStream open(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 16 * 1024));
+    }
+
+    private static void delete(Path folder) {
+        if (folder == null) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted((a, b) -> b.getNameCount() - a.getNameCount()).forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            log.error("ERROR OCCURRED WHILE DELETING {} {}", folder, e.getMessage());
+        }
+    }
+
+    /**
+     * Result of a reconciliation: counts of everything, examples up to the configured limit
+     */
+    public static class Report {
+
+        private long leftRows;
+        private long rightRows;
+        private long matched;
+        private long missing;
+        private long extra;
+        private long mismatched;
+        private long duplicateKeys;
+        private final List<String> missingExamples = new ArrayList<>();
+        private final List<String> extraExamples = new ArrayList<>();
+        private final List<String> mismatchExamples = new ArrayList<>();
+        private final List<String> duplicateExamples = new ArrayList<>();
+
+        public boolean isClean() {
+            return missing == 0 && extra == 0 && mismatched == 0 && duplicateKeys == 0;
+        }
+
+        public long getMatched() {
+            return matched;
+        }
+
+        public long getMissing() {
+            return missing;
+        }
+
+        public long getExtra() {
+            return extra;
+        }
+
+        public long getMismatched() {
+            return mismatched;
+        }
+
+        private void example(List<String> examples, int max, String example) {
+            if (examples.size() < max) {
+                examples.add(example);
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(String.format(
+                    "left rows=%d, right rows=%d, matched=%d, missing=%d, extra=%d, mismatched=%d, duplicate keys=%d",
+                    leftRows, rightRows, matched, missing, extra, mismatched, duplicateKeys));
+            append(text, "missing", missingExamples);
+            append(text, "extra", extraExamples);
+            append(text, "mismatched", mismatchExamples);
+            append(text, "duplicate keys", duplicateExamples);
+            return text.toString();
+        }
+
+        private static void append(StringBuilder text, String title, List<String> examples) {
+            if (!examples.isEmpty()) {
+                text.append(System.lineSeparator()).append(title).append(":");
+                examples.forEach(example -> text.append(System.lineSeparator()).append("  ").append(example));
+            }
+        }
+    }
+
+}
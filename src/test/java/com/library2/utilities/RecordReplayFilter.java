@@ -0,0 +1,345 @@
+package com.library2.utilities;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.restassured.builder.ResponseBuilder;
+import io.restassured.filter.FilterContext;
+import io.restassured.filter.OrderedFilter;
+import io.restassured.filter.time.TimingFilter;
+import io.restassured.http.Header;
+import io.restassured.http.Headers;
+import io.restassured.internal.RestAssuredResponseOptionsImpl;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Records real Library2 API exchanges once and replays them from a file, without network.
+ * <p>
+ * Mode is set by Hooks from api.mode: "live" (default, filter not added), "record" or "replay".
+ * A request is matched on method, path, sorted query and form params and the JSON body with sorted keys.
+ * Volatile fields (api.replay.ignore) can be left out of the match. Tokens stay in it: the replayed /login returns
+ * the recorded token, so /decode of every user still matches exactly. Headers are never part of the match.
+ * If there is no exact match, the last exchange of the same method and path is used (random Faker bodies of
+ * /add_book and /add_user never match exactly); every such answer is logged as a warning and counted in the report.
+ * <p>
+ * File: all exchanges one after the other, then the index (match key -> position), then the position of the index.
+ * Replay reads the file once into memory and decodes an exchange only when it is requested.
+ * <p>
+ * configuration.properties (or -D from terminal):
+ * api.mode                 live, record or replay, default live
+ * api.recording.file       default src/test/resources/recordings/library2-api.rec
+ * api.replay.ignore        comma separated params and JSON body fields left out of the match key, default none
+ * api.replay.latency       true: replay waits the recorded response time, default false
+ */
+public class RecordReplayFilter implements OrderedFilter {
+
+    public enum Mode {LIVE, RECORD, REPLAY}
+
+    public static final RecordReplayFilter INSTANCE = new RecordReplayFilter();
+
+    private static final Logger log = Log.get(RecordReplayFilter.class);
+
+    private static final int FORMAT_VERSION = 1;
+    private static final Path FILE = Path.of(ConfigurationReader.getProperty("api.recording.file", "src/test/resources/recordings/library2-api.rec"));
+    private static final Set<String> IGNORED = Arrays.stream(ConfigurationReader.getProperty("api.replay.ignore", "").split(","))
+            .map(String::trim).filter(name -> !name.isEmpty()).map(String::toLowerCase).collect(Collectors.toSet());
+    private static final boolean REPLAY_LATENCY = Boolean.parseBoolean(ConfigurationReader.getProperty("api.replay.latency", "false"));
+    private static final ObjectMapper mapper = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private static volatile Mode mode = Mode.LIVE;
+
+    // record: match key -> exchange, the last recording of a key wins
+    private static final Map<String, Exchange> recorded = new ConcurrentHashMap<>();
+    private static final Map<String, String> lastKeyOfEndpoint = new ConcurrentHashMap<>();
+
+    // replay: file content and index
+    private static byte[] data;
+    private static Map<String, Integer> index;
+    private static Map<String, Integer> endpointIndex;
+    private static final Map<Integer, Exchange> decoded = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger exactHits = new AtomicInteger();
+    private static final AtomicInteger endpointHits = new AtomicInteger();
+
+    private RecordReplayFilter() {
+    }
+
+    /**
+     * Sets the mode of the run, "replay" loads the recording file
+     *
+     * @param apiMode live, record or replay (case-insensitive)
+     */
+    public static synchronized void setMode(String apiMode) {
+        mode = Mode.valueOf(apiMode.trim().toUpperCase());
+        if (mode == Mode.REPLAY && data == null) {
+            load();
+        }
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return this filter unless the mode is live, to add to a RequestSpecification
+     */
+    public static List<io.restassured.filter.Filter> filters() {
+        List<io.restassured.filter.Filter> filters = new ArrayList<>();
+        if (mode != Mode.LIVE) {
+            filters.add(INSTANCE);
+        }
+        return filters;
+    }
+
+    @Override
+    public int getOrder() {
+        return LOWEST_PRECEDENCE - 1;       // just before the network: AsyncHttpEngine or RestAssured's own sender
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec, FilterContext ctx) {
+
+        String endpoint = requestSpec.getMethod() + " " + URI.create(requestSpec.getURI()).getPath();
+        String key = endpoint + " " + matchParams(requestSpec);
+
+        if (mode == Mode.REPLAY) {
+            return replay(endpoint, key, System.nanoTime());
+        }
+
+        Response response = ctx.next(requestSpec, responseSpec);
+        if (mode == Mode.RECORD) {
+            List<String[]> headers = new ArrayList<>();
+            for (Header header : response.getHeaders()) {
+                headers.add(new String[]{header.getName(), header.getValue()});
+            }
+            recorded.put(key, new Exchange(response.getStatusCode(), response.getStatusLine(), response.getContentType(),
+                    headers, response.asByteArray(), response.getTimeIn(TimeUnit.MILLISECONDS)));
+            lastKeyOfEndpoint.put(endpoint, key);
+        }
+        return response;
+    }
+
+    private static Response replay(String endpoint, String key, long start) {
+        Integer position = index.get(key);
+        if (position != null) {
+            exactHits.incrementAndGet();
+        } else {
+            position = endpointIndex.get(endpoint);
+            if (position == null) {
+                throw new IllegalStateException("No recorded exchange for " + key + " in " + FILE + ", record it with api.mode=record");
+            }
+            endpointHits.incrementAndGet();
+            log.warn("No exact recording of {}, replaying the last recorded {}", key, endpoint);
+        }
+
+        Exchange exchange = decoded.computeIfAbsent(position, RecordReplayFilter::read);
+        if (REPLAY_LATENCY && exchange.millis > 0) {
+            try {
+                Thread.sleep(exchange.millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        List<Header> headers = new ArrayList<>();
+        exchange.headers.forEach(h -> headers.add(new Header(h[0], h[1])));
+        Response response = new ResponseBuilder()
+                .setStatusCode(exchange.statusCode)
+                .setStatusLine(exchange.statusLine)
+                .setHeaders(new Headers(headers))
+                .setContentType(exchange.contentType)
+                .setBody(exchange.body)
+                .build();
+        // real time of the replay, so response time steps measure the replay and not the recording
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        ((RestAssuredResponseOptionsImpl<?>) response).setFilterContextProperties(Map.of(TimingFilter.RESPONSE_TIME_MILLISECONDS, millis));
+        return response;
+    }
+
+    /*
+    Sorted query params, form params and JSON body fields without the ignored ones, e.g. {email=a@b, password=x}
+     */
+    private static String matchParams(FilterableRequestSpecification requestSpec) {
+
+        Map<String, String> params = new TreeMap<>();
+        String query = URI.create(requestSpec.getURI()).getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                String[] keyValue = pair.split("=", 2);
+                params.put(URLDecoder.decode(keyValue[0], StandardCharsets.UTF_8),
+                        keyValue.length > 1 ? URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8) : "");
+            }
+        }
+        requestSpec.getFormParams().forEach((name, value) -> params.put(name, String.valueOf(value)));
+        params.keySet().removeIf(name -> IGNORED.contains(name.toLowerCase()));
+
+        String body = "";
+        Object requestBody = requestSpec.getBody();
+        if (requestBody != null) {
+            body = requestBody instanceof byte[] ? new String((byte[]) requestBody, StandardCharsets.UTF_8) : requestBody.toString();
+            try {
+                JsonNode json = mapper.readTree(body);
+                if (json instanceof ObjectNode) {
+                    Iterator<String> names = json.fieldNames();
+                    while (names.hasNext()) {
+                        if (IGNORED.contains(names.next().toLowerCase())) {
+                            names.remove();
+                        }
+                    }
+                }
+                body = mapper.writeValueAsString(mapper.treeToValue(json, Object.class));   // keys sorted
+            } catch (IOException e) {
+                // not JSON, match on the text as it is
+            }
+        }
+        return params + (body.isEmpty() ? "" : " " + body);
+    }
+
+    /**
+     * Writes the recorded exchanges with their index, in record mode only
+     */
+    public static synchronized void save() {
+        if (mode != Mode.RECORD || recorded.isEmpty()) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(FORMAT_VERSION);
+
+            Map<String, Integer> positions = new LinkedHashMap<>();
+            for (Map.Entry<String, Exchange> entry : recorded.entrySet()) {
+                positions.put(entry.getKey(), out.size());
+                entry.getValue().write(out);
+            }
+
+            int indexPosition = out.size();
+            out.writeInt(positions.size());
+            for (Map.Entry<String, Integer> entry : positions.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+            out.writeInt(lastKeyOfEndpoint.size());
+            for (Map.Entry<String, String> entry : lastKeyOfEndpoint.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(positions.get(entry.getValue()));
+            }
+            out.writeInt(indexPosition);
+            out.flush();
+
+            Files.createDirectories(FILE.toAbsolutePath().getParent());
+            Files.write(FILE, bytes.toByteArray());
+            log.info("Recorded {} API exchanges to {} ({} KB)", recorded.size(), FILE, bytes.size() / 1024);
+        } catch (IOException e) {
+            log.error("ERROR OCCURRED WHILE WRITING API RECORDING {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return how many replayed requests matched exactly and how many only by method and path, empty if not replaying
+     */
+    public static String report() {
+        if (mode != Mode.REPLAY) {
+            return "";
+        }
+        return "API replay from " + FILE + ": exact matches " + exactHits.get() + ", matched by method and path only " + endpointHits.get();
+    }
+
+    private static void load() {
+        try {
+            data = Files.readAllBytes(FILE);
+        } catch (IOException e) {
+            throw new IllegalStateException("API recording " + FILE + " could not be read, record it first with api.mode=record", e);
+        }
+        try {
+            DataInputStream in = stream(0);
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IllegalStateException("API recording " + FILE + " has an unknown format, record it again");
+            }
+            in = stream(stream(data.length - Integer.BYTES).readInt());
+            index = new ConcurrentHashMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                index.put(in.readUTF(), in.readInt());
+            }
+            endpointIndex = new ConcurrentHashMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                endpointIndex.put(in.readUTF(), in.readInt());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("API recording " + FILE + " is damaged, record it again", e);
+        }
+    }
+
+    private static DataInputStream stream(int position) {
+        return new DataInputStream(new ByteArrayInputStream(data, position, data.length - position));
+    }
+
+    private static Exchange read(int position) {
+        try {
+            return Exchange.read(stream(position));
+        } catch (IOException e) {
+            throw new IllegalStateException("API recording " + FILE + " is damaged at " + position, e);
+        }
+    }
+
+    /*
+    One recorded response
+     */
+    private record Exchange(int statusCode, String statusLine, String contentType, List<String[]> headers, byte[] body, long millis) {
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeShort(statusCode);
+            out.writeUTF(statusLine);
+            out.writeUTF(contentType == null ? "" : contentType);
+            out.writeShort(headers.size());
+            for (String[] header : headers) {
+                out.writeUTF(header[0]);
+                out.writeUTF(header[1]);
+            }
+            out.writeInt(body.length);
+            out.write(body);
+            out.writeInt((int) millis);
+        }
+
+        static Exchange read(DataInputStream in) throws IOException {
+            int statusCode = in.readShort();
+            String statusLine = in.readUTF();
+            String contentType = in.readUTF();
+            List<String[]> headers = new ArrayList<>();
+            for (int i = in.readShort(); i > 0; i--) {
+                headers.add(new String[]{in.readUTF(), in.readUTF()});
+            }
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Exchange(statusCode, statusLine, contentType, headers, body, in.readInt());
+        }
+    }
+
+}
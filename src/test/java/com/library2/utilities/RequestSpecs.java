@@ -0,0 +1,141 @@
+package com.library2.utilities;
+
+import io.restassured.RestAssured;
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.config.LogConfig;
+import io.restassured.config.RestAssuredConfig;
+import io.restassured.filter.log.LogDetail;
+import io.restassured.http.ContentType;
+import io.restassured.specification.RequestSpecification;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prebuilt request specifications of the Library2 API, one per role and endpoint family.
+ * <p>
+ * A template holds everything a request of its kind shares: base URI, filters (metrics, record/replay, async engine),
+ * request logging, Accept and Content-Type of the family and the login token of the role. It is built once with a
+ * RequestSpecBuilder and never handed out: callers get a new specification derived from it, which they may change
+ * freely, so scenarios on parallel threads share the templates without locking. Nothing is set in the RestAssured
+ * static defaults (RestAssured.baseURI, RestAssured.config ...), which are shared by all threads.
+ * <p>
+ * A template is built again when its token was renewed (LibraryResources.token), or the base URI or the API mode changed.
+ * <pre>
+ *     Response response = RequestSpecs.given("librarian", RequestSpecs.Family.WRITE).formParams(book).post("/add_book");
+ * </pre>
+ */
+public class RequestSpecs {
+
+    private RequestSpecs() {
+    }
+
+    private static final Logger log = Log.get(RequestSpecs.class);
+    private static final PrintStream REQUEST_LOG = Log.printStream(log, Level.DEBUG);
+
+    public static final String TOKEN_HEADER = "x-library-token";
+
+    /**
+     * Endpoint families by their request format
+     */
+    public enum Family {
+        /** no preset format, the caller sets Accept and Content-Type (feature steps) */
+        ANY,
+        /** GET endpoints answering JSON: get_user_by_id, get_all_users, get_book_categories ... */
+        READ,
+        /** form posts answering JSON: login, add_book, add_user, decode ... */
+        WRITE
+    }
+
+    private record Key(String role, Family family) {
+    }
+
+    private record Template(String baseUri, RecordReplayFilter.Mode mode, String token, RequestSpecification spec) {
+
+        boolean matches(String baseUri, RecordReplayFilter.Mode mode, String token) {
+            return this.baseUri.equals(baseUri) && this.mode == mode && Objects.equals(this.token, token);
+        }
+    }
+
+    private static final Map<Key, Template> templates = new ConcurrentHashMap<>();
+
+    /**
+     * @return new specification with the base URI, filters and request logging, without login
+     */
+    public static RequestSpecification given() {
+        return given(null, Family.ANY);
+    }
+
+    /**
+     * @param family format of the endpoint
+     * @return new specification for an endpoint that needs no login, e.g. /login
+     */
+    public static RequestSpecification given(Family family) {
+        return given(null, family);
+    }
+
+    /**
+     * @param role   librarian or student, null for no login
+     * @param family format of the endpoint
+     * @return new specification derived from the template of the role and family, the token header included
+     */
+    public static RequestSpecification given(String role, Family family) {
+        return RestAssured.given().spec(template(role, family));
+    }
+
+    /**
+     * For tokens that do not belong to a role (login with other credentials): derived from the template without
+     * login, tokens of single logins are not kept
+     *
+     * @param token  login token
+     * @param family format of the endpoint
+     * @return new specification with the token header
+     */
+    public static RequestSpecification givenToken(String token, Family family) {
+        return given(family).header(TOKEN_HEADER, token);
+    }
+
+    /**
+     * Forgets the templates, e.g. between TestDaemon runs
+     */
+    public static void clear() {
+        templates.clear();
+    }
+
+    private static RequestSpecification template(String role, Family family) {
+        String baseUri = LibraryResources.CONFIG.get();
+        RecordReplayFilter.Mode mode = RecordReplayFilter.getMode();
+        String token = role == null ? null : LibraryResources.token(role);      // cached, no request while it is valid
+        return templates.compute(new Key(role, family), (key, cached) ->
+                cached != null && cached.matches(baseUri, mode, token) ? cached : build(baseUri, mode, token, family)).spec();
+    }
+
+    private static Template build(String baseUri, RecordReplayFilter.Mode mode, String token, Family family) {
+        RequestSpecBuilder builder = new RequestSpecBuilder()
+                .setBaseUri(baseUri)
+                .addFilter(MetricsRegistry.httpFilter())
+                .addFilters(RecordReplayFilter.filters())
+                .addFilters(AsyncHttpEngine.filters());
+        if (log.isDebugEnabled()) {
+            // full request dump only at debug level, RestAssured formats it before any level check otherwise
+            builder.setConfig(RestAssuredConfig.config().logConfig(LogConfig.logConfig().defaultStream(REQUEST_LOG)))
+                    .log(LogDetail.ALL);
+        }
+        if (family != Family.ANY) {
+            builder.setAccept(ContentType.JSON);
+        }
+        if (family == Family.WRITE) {
+            builder.setContentType(ContentType.URLENC);
+        }
+        if (token != null) {
+            builder.addHeader(TOKEN_HEADER, token);
+        }
+        log.debug("Request template built: {} {} {}", family, token == null ? "without login" : "with login", baseUri);
+        return new Template(baseUri, mode, token, builder.build());
+    }
+
+}
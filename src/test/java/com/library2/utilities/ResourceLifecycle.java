@@ -0,0 +1,400 @@
+package com.library2.utilities;
+
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Creates, warms up, health-checks and closes the expensive resources of a run, each in its scope:
+ * <ul>
+ * <li>SUITE: one instance for the whole JVM, e.g. DB connection, token cache</li>
+ * <li>WORKER: one instance per scenario thread, kept between its scenarios, e.g. a browser</li>
+ * <li>SCENARIO: one instance per scenario, closed when the scenario ends</li>
+ * </ul>
+ * Instances are created on first {@link Resource#get()}, or at {@link #startSuite} for the eager ones (in parallel).
+ * Hooks calls {@link #beginScenario()} (health checks of the suite and worker instances the thread uses, a failed one
+ * is closed and created again on its next get) and {@link #endScenario()} (closes scenario instances, resets worker ones).
+ * At the end of a run (Hooks @AfterAll) {@link #endRun()} closes the worker instances of the run's other threads.
+ * Suite and worker instances are closed in reverse creation order by {@link #shutdown()}, which also runs at JVM exit.
+ * <p>
+ * Every step is timed, {@link #report()} shows creation (failed attempts included), warm-up, health check and close times per resource.
+ * <p>
+ * configuration.properties (or -D from terminal):
+ * lifecycle.report    report file written at shutdown, default target/performance/resource-lifecycle.txt
+ */
+public class ResourceLifecycle {
+
+    private ResourceLifecycle() {
+    }
+
+    public enum Scope {SUITE, WORKER, SCENARIO}
+
+    private static final Logger log = Log.get(ResourceLifecycle.class);
+
+    private static final List<Resource<?>> resources = new CopyOnWriteArrayList<>();
+    // created suite and worker instances, newest first, closed in this order
+    private static final Deque<Instance<?>> open = new ConcurrentLinkedDeque<>();
+    private static final AtomicBoolean hookInstalled = new AtomicBoolean();
+    private static final AtomicBoolean shutDown = new AtomicBoolean();
+    private static volatile long suiteStartMillis = -1;
+
+    /**
+     * @param name   name in the report and logs
+     * @param scope  how long one instance lives
+     * @param create opens the resource, null means it could not be opened (not kept, tried again on the next get)
+     */
+    public static <T> Resource<T> register(String name, Scope scope, Supplier<T> create) {
+        Resource<T> resource = new Resource<>(name, scope, create);
+        resources.add(resource);
+        return resource;
+    }
+
+    /**
+     * Creates and warms up the given suite resources in parallel and installs the shutdown hook.
+     * A resource that fails here is only logged, the scenarios that need it fail with the real error.
+     */
+    public static void startSuite(Resource<?>... eager) {
+        installShutdownHook();
+        long start = System.nanoTime();
+        List<CompletableFuture<?>> starts = new ArrayList<>();
+        for (Resource<?> resource : eager) {
+            starts.add(CompletableFuture.runAsync(() -> {
+                try {
+                    resource.get();
+                } catch (Exception e) {
+                    log.warn("Resource {} could not be started: {}", resource.name, e.toString());
+                }
+            }));
+        }
+        starts.forEach(CompletableFuture::join);
+        suiteStartMillis = (System.nanoTime() - start) / 1_000_000;
+        Log.timed(log, suiteStartMillis, "Suite resources ready");
+    }
+
+    /**
+     * Health check of the suite and worker instances the current thread uses
+     */
+    public static void beginScenario() {
+        for (Resource<?> resource : resources) {
+            if (resource.scope != Scope.SCENARIO) {
+                resource.checkHealth();
+            }
+        }
+    }
+
+    /**
+     * Closes the scenario instances of the current thread and resets its worker and suite instances
+     */
+    public static void endScenario() {
+        List<Resource<?>> reversed = new ArrayList<>(resources);
+        Collections.reverse(reversed);
+        for (Resource<?> resource : reversed) {
+            resource.endScenario();
+        }
+    }
+
+    /**
+     * Closes the worker instances of all threads except the current one (Hooks @AfterAll, on the thread that started
+     * the run). Parallel runs get new scenario threads every run (TestDaemon, SoakRunner), their browsers would stay
+     * open until JVM exit. The current thread keeps its instances for its next run.
+     */
+    public static void endRun() {
+        for (Resource<?> resource : resources) {
+            if (resource.scope == Scope.WORKER) {
+                resource.closeOtherThreads();
+            }
+        }
+    }
+
+    /**
+     * Closes all suite and worker instances, newest first. Runs once, later calls do nothing.
+     */
+    public static void shutdown() {
+        if (!shutDown.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.nanoTime();
+        Instance<?> instance;
+        while ((instance = open.poll()) != null) {
+            instance.close();
+        }
+        Log.timed(log, (System.nanoTime() - start) / 1_000_000, "Resources closed");
+        writeReport();
+    }
+
+    /**
+     * @return per resource: instances, creation, warm-up, health check and close times
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder("Resource lifecycle");
+        if (suiteStartMillis >= 0) {
+            report.append(" (suite start ").append(suiteStartMillis).append(" ms)");
+        }
+        report.append(System.lineSeparator());
+        report.append(String.format("  %-12s %-8s %7s %10s %10s %8s %8s %10s%n",
+                "resource", "scope", "created", "create ms", "warmup ms", "checks", "failed", "close ms"));
+        for (Resource<?> resource : resources) {
+            report.append(String.format("  %-12s %-8s %7d %10s %10s %8d %8d %10s%n", resource.name, resource.scope,
+                    resource.created.get(), total(resource.createMillis), total(resource.warmUpMillis),
+                    resource.checks.get(), resource.failedChecks.get(), total(resource.closeMillis)));
+        }
+        return report.toString();
+    }
+
+    private static String total(LatencyStats stats) {
+        if (stats.count() == 0) {
+            return "-";
+        }
+        return stats.count() == 1 ? String.format("%.0f", stats.max()) : String.format("%.0f (max %.0f)", stats.mean() * stats.count(), stats.max());
+    }
+
+    private static void writeReport() {
+        String report = report();
+        log.info("{}", report);
+        Path file = Path.of(ConfigurationReader.getProperty("lifecycle.report", "target/performance/resource-lifecycle.txt"));
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.writeString(file, report);
+        } catch (IOException e) {
+            log.error("ERROR OCCURRED WHILE WRITING RESOURCE LIFECYCLE REPORT {}", e.getMessage());
+        }
+    }
+
+    /*
+    Runs in Log's shutdown hook before logging stops, so the close messages are not lost
+     */
+    private static void installShutdownHook() {
+        if (hookInstalled.compareAndSet(false, true)) {
+            Log.beforeShutdown(ResourceLifecycle::shutdown);
+        }
+    }
+
+    /**
+     * One kind of resource, see {@link #register}
+     */
+    public static class Resource<T> {
+
+        private final String name;
+        private final Scope scope;
+        private final Supplier<T> create;
+        private Consumer<T> warmUp = instance -> {
+        };
+        private Predicate<T> healthy = instance -> true;
+        private Consumer<T> reset = instance -> {
+        };
+        private Consumer<T> close = instance -> {
+        };
+
+        private volatile Instance<T> suiteInstance;
+        // WORKER and SCENARIO instances by thread
+        private final Map<Thread, Instance<T>> threadInstances = new ConcurrentHashMap<>();
+
+        private final LatencyStats createMillis = new LatencyStats();
+        private final LatencyStats warmUpMillis = new LatencyStats();
+        private final LatencyStats closeMillis = new LatencyStats();
+        private final AtomicInteger created = new AtomicInteger();
+        private final AtomicInteger checks = new AtomicInteger();
+        private final AtomicInteger failedChecks = new AtomicInteger();
+
+        private Resource(String name, Scope scope, Supplier<T> create) {
+            this.name = name;
+            this.scope = scope;
+            this.create = create;
+        }
+
+        /**
+         * Runs once on every new instance, before it is handed out
+         */
+        public Resource<T> warmUp(Consumer<T> warmUp) {
+            this.warmUp = warmUp;
+            return this;
+        }
+
+        /**
+         * Checked at the start of every scenario for suite and worker instances, false closes the instance
+         */
+        public Resource<T> healthCheck(Predicate<T> healthy) {
+            this.healthy = healthy;
+            return this;
+        }
+
+        /**
+         * Runs at the end of every scenario that used the suite or worker instance, e.g. cleaning a kept browser
+         */
+        public Resource<T> onScenarioEnd(Consumer<T> reset) {
+            this.reset = reset;
+            return this;
+        }
+
+        public Resource<T> onClose(Consumer<T> close) {
+            this.close = close;
+            return this;
+        }
+
+        /**
+         * @return the instance of the current scope, created and warmed up if there is none yet
+         */
+        public T get() {
+            if (scope == Scope.SUITE) {
+                Instance<T> instance = suiteInstance;
+                if (instance == null) {
+                    synchronized (this) {
+                        instance = suiteInstance;
+                        if (instance == null) {
+                            instance = create();
+                            suiteInstance = instance;
+                        }
+                    }
+                }
+                return instance == null ? null : instance.use();
+            }
+            Instance<T> instance = threadInstances.get(Thread.currentThread());
+            if (instance == null) {
+                instance = create();
+                if (instance != null) {
+                    threadInstances.put(Thread.currentThread(), instance);
+                }
+            }
+            return instance == null ? null : instance.use();
+        }
+
+        /**
+         * @return true if the current scope has an instance, without creating one
+         */
+        public boolean isCreated() {
+            return scope == Scope.SUITE ? suiteInstance != null : threadInstances.containsKey(Thread.currentThread());
+        }
+
+        private Instance<T> create() {
+            long start = System.nanoTime();
+            T value = create.get();
+            createMillis.add((System.nanoTime() - start) / 1e6);
+            if (value == null) {
+                log.warn("Resource {} ({}) could not be opened, it is tried again on next use", name, scope);
+                return null;
+            }
+            created.incrementAndGet();
+            start = System.nanoTime();
+            try {
+                warmUp.accept(value);
+            } catch (Exception e) {     // also checked exceptions thrown by Groovy code (RestAssured)
+                log.warn("Warm-up of {} failed, the resource is used anyway: {}", name, e.toString());
+            } finally {
+                warmUpMillis.add((System.nanoTime() - start) / 1e6);
+            }
+            Instance<T> instance = new Instance<>(this, value, Thread.currentThread());
+            if (scope != Scope.SCENARIO) {
+                open.push(instance);
+            }
+            log.debug("Resource {} ({}) created", name, scope);
+            return instance;
+        }
+
+        private void checkHealth() {
+            Instance<T> instance = scope == Scope.SUITE ? suiteInstance : threadInstances.get(Thread.currentThread());
+            if (instance == null) {
+                return;
+            }
+            checks.incrementAndGet();
+            boolean ok;
+            try {
+                ok = healthy.test(instance.value);
+            } catch (RuntimeException e) {
+                ok = false;
+            }
+            if (!ok) {
+                failedChecks.incrementAndGet();
+                log.warn("Resource {} ({}) failed its health check, it is opened again on next use", name, scope);
+                synchronized (this) {
+                    if (scope == Scope.SUITE && suiteInstance == instance) {
+                        suiteInstance = null;
+                    }
+                }
+                threadInstances.remove(instance.owner, instance);
+                open.remove(instance);
+                instance.close();
+            }
+        }
+
+        private void closeOtherThreads() {
+            threadInstances.forEach((owner, instance) -> {
+                if (owner != Thread.currentThread() && threadInstances.remove(owner, instance)) {
+                    open.remove(instance);
+                    instance.close();
+                }
+            });
+        }
+
+        private void endScenario() {
+            if (scope == Scope.SCENARIO) {
+                Instance<T> instance = threadInstances.remove(Thread.currentThread());
+                if (instance != null) {
+                    instance.close();
+                }
+                return;
+            }
+            Instance<T> instance = scope == Scope.SUITE ? suiteInstance : threadInstances.get(Thread.currentThread());
+            if (instance != null && instance.used) {
+                instance.used = false;
+                try {
+                    reset.accept(instance.value);
+                } catch (RuntimeException e) {
+                    log.warn("Resource {} could not be reset: {}", name, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /*
+    One created instance, with the thread it belongs to (WORKER, SCENARIO)
+     */
+    private static class Instance<T> {
+
+        final Resource<T> resource;
+        final T value;
+        final Thread owner;
+        volatile boolean used;      // got since the last scenario end, only used instances are reset
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Instance(Resource<T> resource, T value, Thread owner) {
+            this.resource = resource;
+            this.value = value;
+            this.owner = owner;
+        }
+
+        T use() {
+            used = true;
+            return value;
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                resource.close.accept(value);
+            } catch (RuntimeException e) {
+                log.warn("Resource {} could not be closed: {}", resource.name, e.getMessage());
+            }
+            resource.closeMillis.add((System.nanoTime() - start) / 1e6);
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.library2.utilities;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.networknt.schema.JsonSchema;
+import com.networknt.schema.JsonSchemaFactory;
+import com.networknt.schema.SpecVersion;
+import com.networknt.schema.ValidationMessage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Response contracts of the Library2 endpoints, stored as JSON schemas under src/test/resources/schemas.
+ * <p>
+ * Every schema is loaded and compiled only once per JVM and then cached, so validating a response
+ * is a single pass over the body that reports all violations together.
+ */
+public class ResponseSchemas {
+
+    private ResponseSchemas() {
+    }
+
+    private static final JsonSchemaFactory factory = JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V7);
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final Map<String, JsonSchema> schemas = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the compiled schema, it is loaded from schemas/{name}.json the first time it is asked for
+     *
+     * @param name schema name, e.g. "get_all_users"
+     * @return compiled schema
+     */
+    public static JsonSchema get(String name) {
+        return schemas.computeIfAbsent(name, ResponseSchemas::load);
+    }
+
+    /**
+     * Validates the body against the named schema
+     *
+     * @param name schema name, e.g. "get_all_users"
+     * @param body response body
+     * @return all violations, empty list if the body matches the schema
+     */
+    public static List<String> validate(String name, String body) {
+        JsonNode json;
+        try {
+            json = mapper.readTree(body);
+        } catch (IOException e) {
+            return List.of("response body is not valid JSON: " + e.getMessage());
+        }
+        return get(name).validate(json).stream()
+                .map(ValidationMessage::getMessage)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static JsonSchema load(String name) {
+        String resource = "schemas/" + name + ".json";
+        try (InputStream in = ResponseSchemas.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Schema not found on classpath: " + resource);
+            }
+            JsonSchema schema = factory.getSchema(in);
+            schema.initializeValidators();      // resolve everything now instead of on the first validation
+            return schema;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read schema " + resource, e);
+        }
+    }
+
+}
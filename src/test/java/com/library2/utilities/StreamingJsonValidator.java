@@ -0,0 +1,173 @@
+package com.library2.utilities;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks rules on every element of a large JSON array (e.g. /get_all_users) in one pass over the tokens.
+ * <p>
+ * No tree and no element map is built: the parser moves token by token, only the rule fields of the
+ * current element are looked at and nested values are skipped. Memory stays the same for 10 or 100 000
+ * elements. Per field it collects how many values were null or missing, and min/max length of the values.
+ * <p>
+ * Example:
+ * <pre>
+ * StreamingJsonValidator.Result result = new StreamingJsonValidator("id", "name").validate(response.asInputStream());
+ * Assert.assertTrue(result.toString(), result.isValid());
+ * </pre>
+ */
+public class StreamingJsonValidator {
+
+    private static final JsonFactory factory = new JsonFactory();
+    private static final int MAX_EXAMPLES = 10;
+
+    private final List<String> notNullFields;
+
+    /**
+     * @param notNullFields top level fields every element must have with a non-null value
+     */
+    public StreamingJsonValidator(String... notNullFields) {
+        this.notNullFields = List.of(notNullFields);
+    }
+
+    public StreamingJsonValidator(List<String> notNullFields) {
+        this.notNullFields = List.copyOf(notNullFields);
+    }
+
+    /**
+     * @param in JSON body, a top level array of objects
+     * @return element count, field statistics and the first violations
+     */
+    public Result validate(InputStream in) {
+
+        long start = System.nanoTime();
+        Result result = new Result(notNullFields);
+        boolean[] seen = new boolean[notNullFields.size()];
+
+        try (JsonParser parser = factory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("JSON body is not an array, it starts with " + parser.currentToken());
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                long index = result.elements++;
+                Arrays.fill(seen, false);
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    int field = notNullFields.indexOf(parser.getCurrentName());
+                    JsonToken value = parser.nextToken();
+                    if (field < 0) {
+                        parser.skipChildren();      // not a rule field, nested objects/arrays are skipped without reading them
+                        continue;
+                    }
+                    seen[field] = true;
+                    FieldStats stats = result.fields.get(notNullFields.get(field));
+                    if (value == JsonToken.VALUE_NULL) {
+                        stats.nulls++;
+                        result.violation(index, notNullFields.get(field) + " is null");
+                    } else {
+                        int length = value.isScalarValue() ? parser.getTextLength() : -1;
+                        parser.skipChildren();
+                        stats.add(length);
+                    }
+                }
+                for (int field = 0; field < seen.length; field++) {
+                    if (!seen[field]) {
+                        result.fields.get(notNullFields.get(field)).missing++;
+                        result.violation(index, notNullFields.get(field) + " is missing");
+                    }
+                }
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new IllegalArgumentException("Array element is not an object: " + token);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read JSON array", e);
+        }
+        result.millis = (System.nanoTime() - start) / 1_000_000;
+        return result;
+    }
+
+    /**
+     * Outcome of one pass
+     */
+    public static class Result {
+
+        private long elements;
+        private long violations;
+        private long millis;
+        private final Map<String, FieldStats> fields = new LinkedHashMap<>();
+        private final List<String> examples = new ArrayList<>();
+
+        Result(List<String> fieldNames) {
+            fieldNames.forEach(name -> fields.put(name, new FieldStats()));
+        }
+
+        private void violation(long index, String message) {
+            violations++;
+            if (examples.size() < MAX_EXAMPLES) {
+                examples.add("[" + index + "] " + message);
+            }
+        }
+
+        public boolean isValid() {
+            return violations == 0;
+        }
+
+        public long getElements() {
+            return elements;
+        }
+
+        public long getViolations() {
+            return violations;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(String.format("%d elements checked in %d ms, violations: %d%n", elements, millis, violations));
+            fields.forEach((name, stats) -> text.append(String.format("  %-15s %s%n", name, stats)));
+            examples.forEach(example -> text.append("  ").append(example).append(System.lineSeparator()));
+            if (violations > examples.size()) {
+                text.append("  ... ").append(violations - examples.size()).append(" more").append(System.lineSeparator());
+            }
+            return text.toString();
+        }
+    }
+
+    /*
+    Constant size statistics of one field
+     */
+    private static class FieldStats {
+
+        long values;
+        long nulls;
+        long missing;
+        int minLength = Integer.MAX_VALUE;
+        int maxLength = -1;
+
+        void add(int length) {
+            values++;
+            if (length >= 0) {
+                minLength = Math.min(minLength, length);
+                maxLength = Math.max(maxLength, length);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("values: %d, null: %d, missing: %d, length: %s", values, nulls, missing,
+                    maxLength < 0 ? "-" : minLength + ".." + maxLength);
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.library2.utilities;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebElement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a whole HTML table (headers and all body rows) with one script execution.
+ * <p>
+ * Reading cells with getText() is one remote call per cell, so a grid gets slower with every row.
+ * Here the browser builds the whole table as arrays and sends it back in one response.
+ */
+public class TableReader {
+
+    private TableReader() {
+    }
+
+    /*
+    Headers come from thead, or from the first row if the table has no thead.
+    Rows come from the first tbody, or from all remaining rows.
+     */
+    private static final String SCRIPT = String.join("\n",
+            "var table = arguments[0];",
+            "var text = function (cell) { return cell.innerText.trim(); };",       // like getText()
+            "var headerRow = table.tHead && table.tHead.rows.length ? table.tHead.rows[0] : null;",
+            "var bodyRows = table.tBodies.length ? Array.from(table.tBodies[0].rows) : Array.from(table.rows);",
+            "if (!headerRow && bodyRows.length) { headerRow = bodyRows.shift(); }",
+            "return {",
+            "  headers: headerRow ? Array.from(headerRow.cells).map(text) : [],",
+            "  rows: bodyRows.map(function (tr) { return Array.from(tr.cells).map(text); })",
+            "};");
+
+    /**
+     * @param locator locator of the table element
+     * @return all rows of the table
+     */
+    public static List<TableRow> read(By locator) {
+        return read(Driver.getDriver().findElement(locator));
+    }
+
+    /**
+     * @param table the table element
+     * @return all rows of the table
+     */
+    public static List<TableRow> read(WebElement table) {
+
+        Map<?, ?> data = (Map<?, ?>) ((JavascriptExecutor) Driver.getDriver()).executeScript(SCRIPT, table);
+
+        List<String> headers = texts(data.get("headers"));
+        List<TableRow> rows = new ArrayList<>();
+        for (Object cells : (List<?>) data.get("rows")) {
+            rows.add(new TableRow(headers, texts(cells)));
+        }
+        return rows;
+    }
+
+    /*
+    Array returned by the script -> cell texts
+     */
+    private static List<String> texts(Object array) {
+        List<String> texts = new ArrayList<>();
+        for (Object text : (List<?>) array) {
+            texts.add(String.valueOf(text));
+        }
+        return texts;
+    }
+
+    /**
+     * One row of a table, cells can be read by column number (starting from 1, like td[n]) or by header
+     */
+    public static class TableRow {
+
+        private final List<String> headers;
+        private final List<String> cells;
+
+        TableRow(List<String> headers, List<String> cells) {
+            this.headers = headers;
+            this.cells = Collections.unmodifiableList(cells);
+        }
+
+        /**
+         * @param column column number starting from 1
+         * @return text of the cell, null if the row has no such column (e.g. "No data available" row)
+         */
+        public String get(int column) {
+            return column >= 1 && column <= cells.size() ? cells.get(column - 1) : null;
+        }
+
+        /**
+         * @param header header text, case-insensitive
+         * @return text of the cell under that header
+         */
+        public String get(String header) {
+            for (int i = 0; i < headers.size(); i++) {
+                if (headers.get(i).equalsIgnoreCase(header)) {
+                    return get(i + 1);
+                }
+            }
+            throw new IllegalArgumentException("No column \"" + header + "\" in " + headers);
+        }
+
+        public int getInt(int column) {
+            return Integer.parseInt(get(column).trim());
+        }
+
+        public int getInt(String header) {
+            return Integer.parseInt(get(header).trim());
+        }
+
+        public List<String> getCells() {
+            return cells;
+        }
+
+        /**
+         * @return key: lower case header, value: cell text. Handy to compare with DB_Utils rows.
+         */
+        public Map<String, String> asMap() {
+            Map<String, String> map = new LinkedHashMap<>();
+            for (int i = 0; i < headers.size() && i < cells.size(); i++) {
+                map.put(headers.get(i).toLowerCase(), cells.get(i));
+            }
+            return map;
+        }
+
+        @Override
+        public String toString() {
+            return cells.toString();
+        }
+    }
+
+}
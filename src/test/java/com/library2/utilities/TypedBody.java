@@ -0,0 +1,138 @@
+package com.library2.utilities;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.library2.models.AddResponse;
+import com.library2.models.DecodedUser;
+import com.library2.models.LoginToken;
+import com.library2.models.User;
+import io.restassured.response.Response;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Response body deserialized once into its model class (com.library2.models), with field access by JSON name.
+ * <p>
+ * A JsonPath lookup evaluates a Groovy GPath expression on every call. Here the body is read once by Jackson,
+ * and every field is read through a getter function compiled once per model class (LambdaMetafactory),
+ * which the JIT inlines like a direct getter call.
+ * Endpoints without a model, and paths that are not a top level field, fall back to JsonPath in the steps.
+ */
+public class TypedBody {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    // endpoint as written in the step -> model of its response
+    private static final Map<String, Class<?>> MODELS = Map.of(
+            "/login", LoginToken.class,
+            "/decode", DecodedUser.class,
+            "/get_user_by_id/{id}", User.class,
+            "/add_book", AddResponse.class,
+            "/add_user", AddResponse.class);
+
+    // model class -> JSON field name -> getter
+    private static final Map<Class<?>, Map<String, Function<Object, Object>>> accessors = new ConcurrentHashMap<>();
+
+    private final Object model;
+    private final Map<String, Function<Object, Object>> fields;
+
+    private TypedBody(Object model) {
+        this.model = model;
+        this.fields = accessorsOf(model.getClass());
+    }
+
+    /**
+     * @param endpoint endpoint of the request as written in the step, e.g. /get_user_by_id/{id}
+     * @param response its response
+     * @return the deserialized body, null if the endpoint has no model or the body is not a JSON object
+     */
+    public static TypedBody of(String endpoint, Response response) {
+        Class<?> modelClass = MODELS.get(endpoint);
+        if (modelClass == null) {
+            return null;
+        }
+        byte[] body = response.asByteArray();
+        if (body.length == 0 || body[0] != '{') {
+            return null;
+        }
+        return new TypedBody(read(body, modelClass));
+    }
+
+    /**
+     * @param json       JSON object
+     * @param modelClass model to read it into
+     */
+    public static <T> T read(byte[] json, Class<T> modelClass) {
+        try {
+            return mapper.readValue(json, modelClass);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Response body could not be read as " + modelClass.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * @return true if the model has this JSON field
+     */
+    public boolean has(String field) {
+        return fields.containsKey(field);
+    }
+
+    /**
+     * @param field JSON field name, e.g. full_name
+     * @return the value as String, null if the value is null
+     */
+    public String getString(String field) {
+        Function<Object, Object> getter = fields.get(field);
+        if (getter == null) {
+            throw new IllegalArgumentException(model.getClass().getSimpleName() + " has no field " + field + ", fields: " + fields.keySet());
+        }
+        Object value = getter.apply(model);
+        return value == null ? null : value.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getModel() {
+        return (T) model;
+    }
+
+    /**
+     * Getter functions of a model by JSON name, using the same property names Jackson uses (e.g. snake_case)
+     */
+    public static Map<String, Function<Object, Object>> accessorsOf(Class<?> modelClass) {
+        return accessors.computeIfAbsent(modelClass, type -> {
+            JavaType javaType = mapper.constructType(type);
+            BeanDescription description = mapper.getSerializationConfig().introspect(javaType);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Map<String, Function<Object, Object>> getters = new HashMap<>();
+            for (BeanPropertyDefinition property : description.findProperties()) {
+                if (property.getGetter() == null) {
+                    continue;
+                }
+                Method method = property.getGetter().getAnnotated();
+                try {
+                    MethodHandle getter = lookup.unreflect(method);
+                    CallSite site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+                            MethodType.methodType(Object.class, Object.class), getter, MethodType.methodType(method.getReturnType(), type));
+                    getters.put(property.getName(), (Function<Object, Object>) site.getTarget().invokeExact());
+                } catch (Throwable e) {
+                    throw new IllegalStateException("Getter of " + property.getName() + " in " + type.getSimpleName() + " could not be compiled", e);
+                }
+            }
+            return getters;
+        });
+    }
+
+}
@@ -8,5 +8,15 @@ Feature: As a librarian, I want to retrieve all users from get_all_users endpoin
     When I send GET request to "/get_all_users" endpoint
     Then status code should be 200
     And Response Content type is "application/json; charset=utf-8"
-    And "id" field should not be null
-    And "name" field should not be null
\ No newline at end of file
+    And response body should match "get_all_users" schema
+    And response time should be below 3000 ms at p95 over 20 requests
+
+  @db
+  Scenario: All users from the API endpoint match the users table
+    Given I logged Library api as a "librarian"
+    And Accept header is "application/json"
+    When I send GET request to "/get_all_users" endpoint
+    Then status code should be 200
+    And every entry of the response should match database query "SELECT id, full_name FROM users" by "id"
+      | id   | id        |
+      | name | full_name |
\ No newline at end of file
@@ -11,7 +11,5 @@ Feature: As a user, I want to search for a specific user by their name or email
     Then status code should be 200
     And Response Content type is "application/json; charset=utf-8"
     And "id" field should be same with path param
-    And following fields should not be null
-      | full_name |
-      | email     |
-      | password  |
\ No newline at end of file
+    And response body should match "get_user_by_id" schema
+    And response time should be below 2000 ms at p95 over 20 requests
\ No newline at end of file
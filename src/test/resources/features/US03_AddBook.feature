@@ -11,7 +11,7 @@ Feature: As a librarian, I want to create a new book using add_book endpoint so
     Then status code should be 200
     And Response Content type is "application/json; charset=utf-8"
     And the field value for "message" path should be equal to "The book has been created."
-    And "book_id" field should not be null
+    And response body should match "add_book" schema
 
   @us3 @scenario2 @ui @db
   Scenario: Create a new book ALL LAYERS
@@ -25,5 +25,18 @@ Feature: As a librarian, I want to create a new book using add_book endpoint so
     Then status code should be 200
     And Response Content type is "application/json; charset=utf-8"
     And the field value for "message" path should be equal to "The book has been created."
-    And "book_id" field should not be null
+    And response body should match "add_book" schema
     And UI, Database and API created book information must match
+
+  @us3 @scenario3 @ui @db
+  Scenario: Pre-created book is visible in UI and Database
+    Given I lease a book from the book pool
+    And I logged in Library UI as "librarian"
+    And I navigate to "Books" page
+    Then UI and Database information of the leased book must match
+
+  @us3 @scenario4 @excel
+  Scenario: Create books from the Excel data sheet
+    Given I logged Library api as a "librarian"
+    When I send POST request to "/add_book" for every row of "library-data.xlsx" sheet "books"
+    Then every row should be accepted
@@ -12,7 +12,7 @@ Feature: As a librarian, I want to create a new user using add_user endpoint so
     Then status code should be 200
     And Response Content type is "application/json; charset=utf-8"
     And the field value for "message" path should be equal to "The user has been created."
-    And "user_id" field should not be null
+    And response body should match "add_user" schema
 
   @us4 @scenario2 @db @ui
   Scenario: Create a new user ALL LAYERS
@@ -24,7 +24,7 @@ Feature: As a librarian, I want to create a new user using add_user endpoint so
     Then status code should be 200
     And Response Content type is "application/json; charset=utf-8"
     And the field value for "message" path should be equal to "The user has been created."
-    And "user_id" field should not be null
+    And response body should match "add_user" schema
     And created user information should match with Database
     And created user should be able to login Library UI
     And created user name should appear in Dashboard Page
\ No newline at end of file
@@ -12,8 +12,8 @@ Feature: As a user, I want to view my own user information using decode endpoint
     And Response Content type is "application/json; charset=utf-8"
     And the field value for "user_group_id" path should be equal to "<user_group_id>"
     And the field value for "email" path should be equal to "<email>"
-    And "full_name" field should not be null
-    And "id" field should not be null
+    And response body should match "decode" schema
+    And response time should be below 2000 ms at p95 over 10 requests
     Examples:
       | email               | password    | user_group_id |
       | student5@library    | libraryUser | 3             |